@@ -0,0 +1,86 @@
+package se.umu.cs.dv14vjn.radio.benchmarks;
+
+import org.openjdk.jmh.annotations.*;
+import se.umu.cs.dv14vjn.radio.ResponseParser;
+import se.umu.cs.dv14vjn.radio.channelinfo.Program;
+import se.umu.cs.dv14vjn.radio.storage.ScheduleArchive;
+
+import java.io.ByteArrayInputStream;
+import java.io.IOException;
+import java.nio.file.Files;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Time queries against a schedule archive holding months of history, the recorded day repeated for every day
+ * and channel. Queries pick a random time so that they do not all hit the same pages.
+ * @author Vincent Johansson
+ */
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@State(Scope.Benchmark)
+public class ArchiveBenchmark {
+
+    private static final long DAY = 24 * 60 * 60 * 1000L;
+    private static final int CHANNELS = 50;
+
+    @Param({"30", "180"})
+    public int days;
+
+    private ScheduleArchive archive;
+    private long first;
+    private long last;
+
+    @Setup(Level.Trial)
+    public void setup() throws IOException {
+        List<Program> recorded = new ArrayList<>();
+        ResponseParser.parsePrograms(new ByteArrayInputStream(Fixtures.read(Fixtures.SCHEDULE)),
+                program -> true, recorded);
+        recorded.sort((a, b) -> Long.compare(a.getStartTime(), b.getStartTime()));
+
+        archive = new ScheduleArchive(Files.createTempDirectory("radioinfo-archive"));
+        first = Fixtures.SCHEDULE_DAY;
+        last = first + days * DAY;
+        for (int day = 0; day < days; day++) {
+            Program[] programs = new Program[recorded.size()];
+            for (int i = 0; i < programs.length; i++) {
+                Program program = recorded.get(i);
+                programs[i] = new Program();
+                programs[i].setTitle(program.getTitle());
+                programs[i].setDescription(program.getDescription());
+                programs[i].setImageurl(program.getImageurl());
+                programs[i].setStarttimeutc(program.getStartTime() + day * DAY);
+                programs[i].setEndtimeutc(program.getEndTime() + day * DAY);
+            }
+            for (int channel = 0; channel < CHANNELS; channel++) {
+                archive.append(channel, programs, Long.MAX_VALUE);
+            }
+        }
+    }
+
+    @TearDown(Level.Trial)
+    public void tearDown() throws IOException {
+        archive.close();
+    }
+
+    /**
+     * What aired on a channel at a time
+     */
+    @Benchmark
+    public Program at() throws IOException {
+        ThreadLocalRandom random = ThreadLocalRandom.current();
+        return archive.at(random.nextInt(CHANNELS), random.nextLong(first, last));
+    }
+
+    /**
+     * Everything that aired on a channel during three hours
+     */
+    @Benchmark
+    public List<Program> range() throws IOException {
+        ThreadLocalRandom random = ThreadLocalRandom.current();
+        long from = random.nextLong(first, last);
+        return archive.range(random.nextInt(CHANNELS), from, from + 3 * 60 * 60 * 1000L);
+    }
+}
@@ -0,0 +1,32 @@
+package se.umu.cs.dv14vjn.radio.benchmarks;
+
+import org.openjdk.jmh.profile.GCProfiler;
+import org.openjdk.jmh.runner.Runner;
+import org.openjdk.jmh.runner.RunnerException;
+import org.openjdk.jmh.runner.options.Options;
+import org.openjdk.jmh.runner.options.OptionsBuilder;
+import org.openjdk.jmh.runner.options.TimeValue;
+
+/**
+ * Runs the benchmarks with the GC profiler, reporting allocation per operation next to the time
+ * An optional argument selects benchmarks by regular expression, for example "Decode"
+ * @author Vincent Johansson
+ */
+public class BenchmarkRunner {
+
+    public static void main(String[] args) throws RunnerException {
+        Options options = new OptionsBuilder()
+                .include(args.length > 0 ? args[0] : BenchmarkRunner.class.getPackageName() + ".*Benchmark")
+                .addProfiler(GCProfiler.class)
+                /* The simulator starts the first HTTP server of the benchmark process, so the schedule server
+                 * cannot enable TCP_NODELAY for itself */
+                .jvmArgsAppend("-Djava.awt.headless=true", "-Dsun.net.httpserver.nodelay=true")
+                .forks(1)
+                .warmupIterations(3)
+                .warmupTime(TimeValue.seconds(1))
+                .measurementIterations(5)
+                .measurementTime(TimeValue.seconds(1))
+                .build();
+        new Runner(options).run();
+    }
+}
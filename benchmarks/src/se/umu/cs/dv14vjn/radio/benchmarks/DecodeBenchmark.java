@@ -0,0 +1,82 @@
+package se.umu.cs.dv14vjn.radio.benchmarks;
+
+import com.fasterxml.jackson.databind.JsonNode;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import org.openjdk.jmh.annotations.*;
+import se.umu.cs.dv14vjn.radio.ResponseParser;
+import se.umu.cs.dv14vjn.radio.channelinfo.Channel;
+import se.umu.cs.dv14vjn.radio.channelinfo.Program;
+
+import java.io.BufferedReader;
+import java.io.ByteArrayInputStream;
+import java.io.IOException;
+import java.io.InputStreamReader;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * JSON decoding of the recorded channels and scheduledepisodes responses
+ * The tree benchmarks keep the readTree + treeToValue path that ResponseParser replaced as a baseline
+ * @author Vincent Johansson
+ */
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@State(Scope.Benchmark)
+public class DecodeBenchmark {
+
+    private byte[] channels;
+    private byte[] schedule;
+
+    @Setup
+    public void setup() throws IOException {
+        channels = Fixtures.read(Fixtures.CHANNELS);
+        schedule = Fixtures.read(Fixtures.SCHEDULE);
+    }
+
+    @Benchmark
+    public List<Channel> streamChannels() throws IOException {
+        List<Channel> lst = new ArrayList<>();
+        ResponseParser.parseChannels(new ByteArrayInputStream(channels), channel -> true, lst);
+        return lst;
+    }
+
+    @Benchmark
+    public List<Program> streamSchedule() throws IOException {
+        List<Program> lst = new ArrayList<>();
+        ResponseParser.parsePrograms(new ByteArrayInputStream(schedule), program -> true, lst);
+        return lst;
+    }
+
+    @Benchmark
+    public List<Channel> treeChannels() throws IOException {
+        return treeDecode(channels, "channels", Channel.class);
+    }
+
+    @Benchmark
+    public List<Program> treeSchedule() throws IOException {
+        return treeDecode(schedule, "schedule", Program.class);
+    }
+
+    /**
+     * The decoding path used before ResponseParser: the body is read line by line into a String,
+     * parsed into a JsonNode tree by a new ObjectMapper and each element is converted with treeToValue
+     */
+    private static <T> List<T> treeDecode(byte[] response, String field, Class<T> type) throws IOException {
+        StringBuilder jsonData = new StringBuilder();
+        BufferedReader reader = new BufferedReader(new InputStreamReader(new ByteArrayInputStream(response)));
+        String buf;
+        while ((buf = reader.readLine()) != null) {
+            jsonData.append(buf);
+        }
+        reader.close();
+
+        ObjectMapper mapper = new ObjectMapper();
+        JsonNode rootNode = mapper.readTree(jsonData.toString());
+        List<T> lst = new ArrayList<>();
+        for (JsonNode node : rootNode.path(field)) {
+            lst.add(mapper.treeToValue(node, type));
+        }
+        return lst;
+    }
+}
@@ -0,0 +1,149 @@
+package se.umu.cs.dv14vjn.radio.benchmarks;
+
+import org.openjdk.jmh.annotations.*;
+import se.umu.cs.dv14vjn.radio.APIHandler;
+import se.umu.cs.dv14vjn.radio.Configuration;
+import se.umu.cs.dv14vjn.radio.benchmarks.simulator.ApiSimulator;
+import se.umu.cs.dv14vjn.radio.channelinfo.Channel;
+import se.umu.cs.dv14vjn.radio.channelinfo.Program;
+import se.umu.cs.dv14vjn.radio.channelinfo.Schedule;
+import se.umu.cs.dv14vjn.radio.gui.DataChangeListener;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Cold start and channel switching against the ApiSimulator, with configurable latency and payload sizes
+ * Every invocation gets a handler of its own that is closed afterwards, so no schedule is cached between
+ * invocations and no threads are left behind
+ * @author Vincent Johansson
+ */
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@State(Scope.Benchmark)
+public class EndToEndBenchmark {
+
+    @Param({"0", "50"})
+    public long latencyMillis;
+
+    @Param({"50", "500"})
+    public int channelCount;
+
+    @Param({"68", "2000"})
+    public int programsPerDay;
+
+    private ApiSimulator simulator;
+
+    /**
+     * The handler created by an invocation of coldStart, closed once the invocation is done
+     */
+    @State(Scope.Thread)
+    public static class Started {
+        private APIHandler handler;
+
+        @TearDown(Level.Invocation)
+        public void tearDown() {
+            if (handler != null) {
+                handler.close();
+                handler = null;
+            }
+        }
+    }
+
+    /**
+     * A handler with the channel list loaded and no schedule fetched, created before and closed after every
+     * invocation of switchChannel
+     */
+    @State(Scope.Thread)
+    public static class Viewer {
+        private APIHandler handler;
+        private Channel channel;
+        private int nextChannel;
+
+        @Setup(Level.Invocation)
+        public void setup(EndToEndBenchmark benchmark) throws IOException, InterruptedException {
+            handler = benchmark.start();
+            String[] names = handler.getChannels().getNames();
+            channel = handler.getChannels().getChannel(names[nextChannel++ % names.length]);
+        }
+
+        @TearDown(Level.Invocation)
+        public void tearDown() {
+            handler.close();
+        }
+    }
+
+    @Setup(Level.Trial)
+    public void setup() throws IOException {
+        simulator = new ApiSimulator();
+        simulator.setLatency(latencyMillis);
+        simulator.setChannelCount(channelCount);
+        simulator.setProgramsPerDay(programsPerDay);
+        simulator.start(0);
+    }
+
+    @TearDown(Level.Trial)
+    public void tearDown() {
+        simulator.stop();
+    }
+
+    /**
+     * Time from creating the handler with an empty data directory until the channel list has arrived
+     */
+    @Benchmark
+    @BenchmarkMode(Mode.SingleShotTime)
+    public APIHandler coldStart(Started started) throws IOException, InterruptedException {
+        started.handler = start();
+        return started.handler;
+    }
+
+    /**
+     * Time to fetch the schedule of a channel that has not been viewed before
+     */
+    @Benchmark
+    @BenchmarkMode(Mode.AverageTime)
+    public Schedule switchChannel(Viewer viewer) {
+        return viewer.handler.parseSchedule(viewer.channel);
+    }
+
+    /**
+     * Create a handler with an empty data directory and wait until the channel list has arrived
+     * @return APIHandler with the channel list loaded
+     */
+    private APIHandler start() throws IOException, InterruptedException {
+        Configuration configuration = new Configuration();
+        configuration.setApiUrl(simulator.getApiUrl());
+        configuration.setDefaultImageUrl(simulator.getImageUrl());
+        configuration.setDataDirectory(Files.createTempDirectory("radioinfo-bench"));
+        /* Background prefetching would warm the channels the benchmark switches to */
+        configuration.setPrefetchChannels(0);
+        CountDownLatch loaded = new CountDownLatch(1);
+        APIHandler handler = new APIHandler(configuration);
+        handler.addDataChangeListener(new DataChangeListener() {
+            @Override
+            public void dataChanged(int channelId) {
+            }
+
+            @Override
+            public void channelsChanged() {
+                loaded.countDown();
+            }
+
+            @Override
+            public void imageLoaded(Program program) {
+            }
+
+            @Override
+            public void errorOccurred(String message) {
+            }
+        });
+
+        /* The list may have arrived before the listener was added */
+        if (handler.getChannels().getNames().length > 0) {
+            loaded.countDown();
+        }
+        loaded.await();
+        return handler;
+    }
+}
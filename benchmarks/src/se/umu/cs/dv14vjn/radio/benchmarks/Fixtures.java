@@ -0,0 +1,36 @@
+package se.umu.cs.dv14vjn.radio.benchmarks;
+
+import java.io.FileNotFoundException;
+import java.io.IOException;
+import java.io.InputStream;
+
+/**
+ * Loads the recorded API responses and images from the fixtures directory on the classpath
+ * @author Vincent Johansson
+ */
+public class Fixtures {
+
+    public static final String CHANNELS = "/fixtures/channels.json";
+    public static final String SCHEDULE = "/fixtures/scheduledepisodes.json";
+    public static final String PROGRAM_IMAGE = "/fixtures/program-image.jpg";
+
+    /** Start of the recorded schedule day, 2023-03-12 00:00 CET */
+    public static final long SCHEDULE_DAY = 1678575600000L;
+
+    private Fixtures() {
+    }
+
+    /**
+     * Read a fixture into memory
+     * @param name String resource name of the fixture
+     * @return byte array with the content
+     */
+    public static byte[] read(String name) throws IOException {
+        try (InputStream in = Fixtures.class.getResourceAsStream(name)) {
+            if (in == null) {
+                throw new FileNotFoundException(name + " not found on classpath");
+            }
+            return in.readAllBytes();
+        }
+    }
+}
@@ -0,0 +1,105 @@
+package se.umu.cs.dv14vjn.radio.benchmarks;
+
+import se.umu.cs.dv14vjn.radio.ResponseParser;
+import se.umu.cs.dv14vjn.radio.channelinfo.Program;
+import se.umu.cs.dv14vjn.radio.channelinfo.StringPool;
+
+import java.io.ByteArrayInputStream;
+import java.io.IOException;
+import java.lang.management.ManagementFactory;
+import java.lang.management.MemoryMXBean;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.IdentityHashMap;
+import java.util.List;
+import java.util.Set;
+
+/**
+ * Measures the heap retained by the schedules of a long running instance, the recorded day parsed once per
+ * channel and day, with the strings interned during deserialization compared to every program holding its own
+ * copies as before
+ * An optional argument sets the number of schedule days held, 150 by default (50 channels, 3 days each)
+ * @author Vincent Johansson
+ */
+public class HeapFootprint {
+
+    public static void main(String[] args) throws IOException {
+        int copies = args.length > 0 ? Integer.parseInt(args[0]) : 150;
+        byte[] response = Fixtures.read(Fixtures.SCHEDULE);
+
+        /* Parse once first so that the parser's own caches are not counted as schedule data, then empty the
+           pool again so that the pooled strings are counted as part of the interned schedules */
+        parse(response, 1);
+        StringPool.SHARED.clear();
+
+        long empty = usedHeap();
+        List<Program> interned = parse(response, copies);
+        long internedBytes = usedHeap() - empty;
+        int internedStrings = distinctStrings(interned);
+        interned = null;
+
+        empty = usedHeap();
+        List<Program> copied = copy(parse(response, copies));
+        long copiedBytes = usedHeap() - empty;
+        int copiedStrings = distinctStrings(copied);
+
+        System.out.printf("%d programs in %d schedule days%n", copied.size(), copies);
+        System.out.printf("%-10s %12s %16s%n", "", "heap", "string objects");
+        System.out.printf("%-10s %10.1f MB %16d%n", "copied", copiedBytes / 1e6, copiedStrings);
+        System.out.printf("%-10s %10.1f MB %16d%n", "interned", internedBytes / 1e6, internedStrings);
+        System.out.printf("interning saves %.0f %% of the heap held by the schedules%n",
+                100.0 * (copiedBytes - internedBytes) / copiedBytes);
+    }
+
+    private static List<Program> parse(byte[] response, int copies) throws IOException {
+        List<Program> programs = new ArrayList<>();
+        for (int i = 0; i < copies; i++) {
+            ResponseParser.parsePrograms(new ByteArrayInputStream(response), program -> true, programs);
+        }
+        return programs;
+    }
+
+    /**
+     * Give every program its own copies of its strings, the way deserialization worked before interning
+     */
+    private static List<Program> copy(List<Program> programs) {
+        for (Program program : programs) {
+            program.setTitle(copy(program.getTitle()));
+            program.setDescription(copy(program.getDescription()));
+            program.setImageurl(copy(program.getImageurl()));
+        }
+        return programs;
+    }
+
+    private static String copy(String string) {
+        return string != null ? new String(string.toCharArray()) : null;
+    }
+
+    private static int distinctStrings(List<Program> programs) {
+        Set<String> strings = Collections.newSetFromMap(new IdentityHashMap<>());
+        for (Program program : programs) {
+            strings.add(program.getTitle());
+            strings.add(program.getDescription());
+            strings.add(program.getImageurl());
+        }
+        strings.remove(null);
+        return strings.size();
+    }
+
+    /**
+     * Returns the used heap once repeated collections no longer free anything
+     */
+    private static long usedHeap() {
+        MemoryMXBean memory = ManagementFactory.getMemoryMXBean();
+        long used = Long.MAX_VALUE;
+        for (int i = 0; i < 10; i++) {
+            System.gc();
+            long now = memory.getHeapMemoryUsage().getUsed();
+            if (now >= used) {
+                break;
+            }
+            used = now;
+        }
+        return used;
+    }
+}
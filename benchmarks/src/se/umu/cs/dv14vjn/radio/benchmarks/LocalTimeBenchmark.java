@@ -0,0 +1,29 @@
+package se.umu.cs.dv14vjn.radio.benchmarks;
+
+import org.openjdk.jmh.annotations.*;
+import se.umu.cs.dv14vjn.radio.channelinfo.Program;
+
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Formatting of a program start time for display
+ * @author Vincent Johansson
+ */
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@State(Scope.Benchmark)
+public class LocalTimeBenchmark {
+
+    private Program program;
+
+    @Setup
+    public void setup() {
+        program = new Program();
+        program.setStarttimeutc(Fixtures.SCHEDULE_DAY + 3_600_000L);
+    }
+
+    @Benchmark
+    public String getLocalTime() {
+        return program.getLocalTime();
+    }
+}
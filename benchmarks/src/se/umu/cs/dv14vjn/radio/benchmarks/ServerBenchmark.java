@@ -0,0 +1,85 @@
+package se.umu.cs.dv14vjn.radio.benchmarks;
+
+import org.openjdk.jmh.annotations.*;
+import se.umu.cs.dv14vjn.radio.APIHandler;
+import se.umu.cs.dv14vjn.radio.Configuration;
+import se.umu.cs.dv14vjn.radio.benchmarks.simulator.ApiSimulator;
+import se.umu.cs.dv14vjn.radio.channelinfo.Channel;
+import se.umu.cs.dv14vjn.radio.server.ScheduleServer;
+
+import java.io.IOException;
+import java.net.InetSocketAddress;
+import java.net.URI;
+import java.net.http.HttpClient;
+import java.net.http.HttpRequest;
+import java.net.http.HttpResponse;
+import java.nio.file.Files;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Requests per second the embedded schedule server answers from memory, with full responses and with
+ * revalidations answered 304 Not Modified
+ * @author Vincent Johansson
+ */
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.SECONDS)
+@Threads(8)
+@State(Scope.Benchmark)
+public class ServerBenchmark {
+
+    private ApiSimulator simulator;
+    private APIHandler handler;
+    private ScheduleServer server;
+    private HttpClient client;
+    private URI scheduleUri;
+    private String etag;
+
+    @Setup(Level.Trial)
+    public void setup() throws IOException, InterruptedException {
+        simulator = new ApiSimulator();
+        simulator.start(0);
+        Configuration configuration = new Configuration();
+        configuration.setApiUrl(simulator.getApiUrl());
+        configuration.setDefaultImageUrl(simulator.getImageUrl());
+        configuration.setDataDirectory(Files.createTempDirectory("radioinfo-bench"));
+        configuration.setPrefetchChannels(0);
+        handler = new APIHandler(configuration);
+        while (handler.getChannels().getNames().length == 0) {
+            Thread.sleep(10);
+        }
+        Channel channel = handler.getChannels().getChannel(handler.getChannels().getNames()[0]);
+        handler.cacheSchedule(channel);
+
+        server = new ScheduleServer(handler, new InetSocketAddress("localhost", 0), 8);
+        server.start();
+        client = HttpClient.newBuilder().version(HttpClient.Version.HTTP_1_1).build();
+        scheduleUri = URI.create("http://localhost:" + server.getPort() + "/channels/" + channel.getId()
+                + "/schedule");
+        etag = fullResponse().headers().firstValue("ETag").orElseThrow();
+    }
+
+    @TearDown(Level.Trial)
+    public void tearDown() {
+        server.stop();
+        handler.close();
+        simulator.stop();
+    }
+
+    /**
+     * A client without a copy of the schedule, sent the pre-compressed document
+     */
+    @Benchmark
+    public HttpResponse<byte[]> fullResponse() throws IOException, InterruptedException {
+        return client.send(HttpRequest.newBuilder(scheduleUri).header("Accept-Encoding", "gzip").build(),
+                HttpResponse.BodyHandlers.ofByteArray());
+    }
+
+    /**
+     * A client revalidating the copy it already has
+     */
+    @Benchmark
+    public HttpResponse<byte[]> notModified() throws IOException, InterruptedException {
+        return client.send(HttpRequest.newBuilder(scheduleUri).header("Accept-Encoding", "gzip")
+                .header("If-None-Match", etag).build(), HttpResponse.BodyHandlers.ofByteArray());
+    }
+}
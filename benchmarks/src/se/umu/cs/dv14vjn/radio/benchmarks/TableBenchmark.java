@@ -0,0 +1,67 @@
+package se.umu.cs.dv14vjn.radio.benchmarks;
+
+import org.openjdk.jmh.annotations.*;
+import se.umu.cs.dv14vjn.radio.ResponseParser;
+import se.umu.cs.dv14vjn.radio.channelinfo.Program;
+import se.umu.cs.dv14vjn.radio.channelinfo.Schedule;
+import se.umu.cs.dv14vjn.radio.gui.ScheduleTableModel;
+
+import javax.swing.*;
+import javax.swing.table.DefaultTableModel;
+import java.awt.image.BufferedImage;
+import java.io.ByteArrayInputStream;
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Filling the schedule table with a whole recorded schedule, one addRow per program on a DefaultTableModel
+ * the way GUI.updateTable used to compared to handing the array to a ScheduleTableModel
+ * @author Vincent Johansson
+ */
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@State(Scope.Benchmark)
+public class TableBenchmark {
+
+    private static final ImageIcon PLACEHOLDER_ICON =
+            new ImageIcon(new BufferedImage(60, 40, BufferedImage.TYPE_INT_ARGB));
+
+    private Schedule schedule;
+    private DefaultTableModel tableModel;
+    private ScheduleTableModel scheduleTableModel;
+
+    @Setup
+    public void setup() throws IOException {
+        List<Program> programs = new ArrayList<>();
+        ResponseParser.parsePrograms(new ByteArrayInputStream(Fixtures.read(Fixtures.SCHEDULE)),
+                program -> true, programs);
+        schedule = new Schedule(programs.toArray(Program[]::new));
+
+        tableModel = new DefaultTableModel();
+        tableModel.addColumn("");
+        tableModel.addColumn("Title");
+        tableModel.addColumn("Description");
+        tableModel.addColumn("Start time");
+        scheduleTableModel = new ScheduleTableModel(program -> null);
+    }
+
+    @Benchmark
+    public DefaultTableModel fillDefaultTableModel() {
+        tableModel.setRowCount(0);
+        for (Program program : schedule.getSchedule()) {
+            /* No images are loaded here, so every row gets the placeholder as it does before they arrive */
+            tableModel.addRow(new Object[]{PLACEHOLDER_ICON, program.getTitle(),
+                    program.getDescription(), program.getLocalTime()});
+        }
+        return tableModel;
+    }
+
+    @Benchmark
+    public ScheduleTableModel fillScheduleTableModel() {
+        scheduleTableModel.setPrograms(new Program[0]);
+        scheduleTableModel.setPrograms(schedule.getSchedule());
+        return scheduleTableModel;
+    }
+}
@@ -0,0 +1,45 @@
+package se.umu.cs.dv14vjn.radio.benchmarks;
+
+import org.openjdk.jmh.annotations.*;
+import se.umu.cs.dv14vjn.radio.images.ThumbnailDecoder;
+
+import javax.imageio.ImageIO;
+import java.awt.*;
+import java.awt.image.BufferedImage;
+import java.io.ByteArrayInputStream;
+import java.io.IOException;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Decoding and scaling of a recorded 500x500 program image into a table thumbnail, with source subsampling
+ * compared to decoding every pixel before scaling
+ * @author Vincent Johansson
+ */
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@State(Scope.Benchmark)
+public class ThumbnailBenchmark {
+
+    private byte[] image;
+
+    @Setup
+    public void setup() throws IOException {
+        image = Fixtures.read(Fixtures.PROGRAM_IMAGE);
+    }
+
+    @Benchmark
+    public BufferedImage decode() throws IOException {
+        return ThumbnailDecoder.decode(new ByteArrayInputStream(image), 60, 40);
+    }
+
+    @Benchmark
+    public BufferedImage decodeFullResolution() throws IOException {
+        BufferedImage source = ImageIO.read(new ByteArrayInputStream(image));
+        BufferedImage scaled = new BufferedImage(60, 40, BufferedImage.TYPE_INT_ARGB);
+        Graphics2D g = scaled.createGraphics();
+        g.setRenderingHint(RenderingHints.KEY_INTERPOLATION, RenderingHints.VALUE_INTERPOLATION_BILINEAR);
+        g.drawImage(source, 0, 0, 60, 40, null);
+        g.dispose();
+        return scaled;
+    }
+}
@@ -0,0 +1,66 @@
+package se.umu.cs.dv14vjn.radio.benchmarks;
+
+import org.openjdk.jmh.annotations.*;
+import se.umu.cs.dv14vjn.radio.ResponseParser;
+import se.umu.cs.dv14vjn.radio.channelinfo.Program;
+import se.umu.cs.dv14vjn.radio.channelinfo.Schedule;
+import se.umu.cs.dv14vjn.radio.channelinfo.ScheduleDays;
+
+import java.io.ByteArrayInputStream;
+import java.io.IOException;
+import java.time.LocalDate;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Windowing of a recorded schedule, re-parsing the whole day the way every refresh used to compared to cutting
+ * the window from a stored day, plus the time queries on Schedule
+ * "Now" is fixed at noon of the recorded day so the -6h/+12h window always cuts the schedule
+ * @author Vincent Johansson
+ */
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@State(Scope.Benchmark)
+public class WindowBenchmark {
+
+    private static final long NOW = Fixtures.SCHEDULE_DAY + 12 * 60 * 60 * 1000L;
+    private static final long FROM = NOW - 6 * 60 * 60 * 1000L;
+    private static final long TO = NOW + 12 * 60 * 60 * 1000L;
+
+    private byte[] response;
+    private Schedule schedule;
+    private ScheduleDays days;
+
+    @Setup
+    public void setup() throws IOException {
+        response = Fixtures.read(Fixtures.SCHEDULE);
+        List<Program> programs = new ArrayList<>();
+        ResponseParser.parsePrograms(new ByteArrayInputStream(response), program -> true, programs);
+        schedule = new Schedule(programs.toArray(Program[]::new));
+        days = ScheduleDays.EMPTY.withDay(LocalDate.of(2023, 3, 12), programs.toArray(Program[]::new));
+    }
+
+    @Benchmark
+    public List<Program> reparseWindow() throws IOException {
+        List<Program> lst = new ArrayList<>();
+        ResponseParser.parsePrograms(new ByteArrayInputStream(response),
+                program -> program.getStartTime() >= FROM && program.getStartTime() <= TO, lst);
+        return lst;
+    }
+
+    @Benchmark
+    public Schedule storedWindow() {
+        return days.window(FROM, TO);
+    }
+
+    @Benchmark
+    public Program nowPlaying() {
+        return schedule.nowPlaying(NOW);
+    }
+
+    @Benchmark
+    public int range() {
+        return schedule.rangeEnd(TO) - schedule.rangeStart(FROM);
+    }
+}
@@ -0,0 +1,321 @@
+package se.umu.cs.dv14vjn.radio.benchmarks.simulator;
+
+import com.fasterxml.jackson.databind.JsonNode;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.fasterxml.jackson.databind.node.ArrayNode;
+import com.fasterxml.jackson.databind.node.ObjectNode;
+import com.sun.net.httpserver.HttpExchange;
+import com.sun.net.httpserver.HttpServer;
+import se.umu.cs.dv14vjn.radio.benchmarks.Fixtures;
+
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.net.InetSocketAddress;
+import java.time.LocalDate;
+import java.time.ZoneId;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.zip.GZIPOutputStream;
+
+/**
+ * ApiSimulator is an embeddable fake of the Sveriges Radio API that serves the recorded channel list,
+ * schedules and images from memory
+ * Latency, bandwidth, error rate and the size of the payloads can be configured, so that cold start,
+ * channel switching and refreshes can be measured repeatably without network access. Start the application
+ * with -Dradioinfo.api.url and -Dradioinfo.image.url set to the URLs printed by main to use it.
+ * @author Vincent Johansson
+ */
+public class ApiSimulator {
+
+    private static final ZoneId ZONE = ZoneId.of("Europe/Stockholm");
+    private static final int CHUNK_SIZE = 8 * 1024;
+
+    private final ObjectMapper mapper = new ObjectMapper();
+    private final Map<String, byte[]> responses = new ConcurrentHashMap<>();
+    private final AtomicLong requests = new AtomicLong();
+    private final JsonNode channelFixture;
+    private final JsonNode scheduleFixture;
+    private final byte[] image;
+
+    private HttpServer server;
+    private ExecutorService executor;
+    private long latencyMillis;
+    private long bytesPerSecond;
+    private double errorRate;
+    private int channelCount;
+    private int programsPerDay;
+
+    /**
+     * Initializes a new se.umu.cs.dv14vjn.radio.benchmarks.simulator.ApiSimulator
+     * By default it answers immediately, never fails and serves the fixtures at their recorded size
+     */
+    public ApiSimulator() throws IOException {
+        channelFixture = mapper.readTree(Fixtures.read(Fixtures.CHANNELS)).path("channels");
+        scheduleFixture = mapper.readTree(Fixtures.read(Fixtures.SCHEDULE)).path("schedule");
+        image = Fixtures.read(Fixtures.PROGRAM_IMAGE);
+        channelCount = channelFixture.size();
+        programsPerDay = scheduleFixture.size();
+    }
+
+    /**
+     * Sets the delay before each response is sent
+     * @param latencyMillis long delay in milliseconds
+     */
+    public void setLatency(long latencyMillis) {
+        this.latencyMillis = latencyMillis;
+    }
+
+    /**
+     * Sets the bandwidth each response body is sent with
+     * @param bytesPerSecond long bytes per second, 0 for unlimited
+     */
+    public void setBandwidth(long bytesPerSecond) {
+        this.bytesPerSecond = bytesPerSecond;
+    }
+
+    /**
+     * Sets the share of requests that are answered with 503 Service Unavailable
+     * @param errorRate double between 0 and 1
+     */
+    public void setErrorRate(double errorRate) {
+        this.errorRate = errorRate;
+    }
+
+    /**
+     * Sets the number of channels in the channel list, the recorded channels are repeated under new ids
+     * @param channelCount int number of channels
+     */
+    public void setChannelCount(int channelCount) {
+        this.channelCount = channelCount;
+        responses.clear();
+    }
+
+    /**
+     * Sets the number of programs in each day's schedule, spread evenly over the day
+     * @param programsPerDay int number of programs
+     */
+    public void setProgramsPerDay(int programsPerDay) {
+        this.programsPerDay = programsPerDay;
+        responses.clear();
+    }
+
+    /**
+     * Start serving requests
+     * @param port int port to listen on, 0 to pick a free one
+     */
+    public void start(int port) throws IOException {
+        executor = Executors.newFixedThreadPool(32);
+        server = HttpServer.create(new InetSocketAddress("localhost", port), 0);
+        server.createContext("/api/v2/channels", exchange -> handle(exchange, this::channels, "application/json"));
+        server.createContext("/api/v2/scheduledepisodes",
+                exchange -> handle(exchange, this::schedule, "application/json"));
+        server.createContext("/images", exchange -> handle(exchange, query -> image, "image/jpeg"));
+        server.setExecutor(executor);
+        server.start();
+    }
+
+    /**
+     * Stop serving requests
+     */
+    public void stop() {
+        server.stop(0);
+        executor.shutdownNow();
+    }
+
+    /**
+     * Returns the base URL of the simulated API, the value for radioinfo.api.url
+     * @return String URL
+     */
+    public String getApiUrl() {
+        return getBaseUrl() + "/api/v2";
+    }
+
+    /**
+     * Returns the URL of the simulated default program image, the value for radioinfo.image.url
+     * @return String URL
+     */
+    public String getImageUrl() {
+        return getBaseUrl() + "/images/content/default-list-image.png";
+    }
+
+    /**
+     * Returns the number of requests answered so far
+     * @return long number of requests
+     */
+    public long getRequestCount() {
+        return requests.get();
+    }
+
+    private String getBaseUrl() {
+        return "http://localhost:" + server.getAddress().getPort();
+    }
+
+    /**
+     * Answer a request, applying the configured latency, error rate and bandwidth
+     */
+    private void handle(HttpExchange exchange, Generator generator, String contentType) throws IOException {
+        requests.incrementAndGet();
+        try (exchange) {
+            if (latencyMillis > 0) {
+                Thread.sleep(latencyMillis);
+            }
+            if (ThreadLocalRandom.current().nextDouble() < errorRate) {
+                exchange.sendResponseHeaders(503, -1);
+                return;
+            }
+
+            String query = exchange.getRequestURI().getRawQuery();
+            byte[] body = generator.generate(query == null ? "" : query);
+            String etag = "\"" + Integer.toHexString(Arrays.hashCode(body)) + "\"";
+            exchange.getResponseHeaders().set("ETag", etag);
+            exchange.getResponseHeaders().set("Content-Type", contentType);
+            if (etag.equals(exchange.getRequestHeaders().getFirst("If-None-Match"))) {
+                exchange.sendResponseHeaders(304, -1);
+                return;
+            }
+
+            String acceptEncoding = exchange.getRequestHeaders().getFirst("Accept-Encoding");
+            if (acceptEncoding != null && acceptEncoding.contains("gzip") && contentType.startsWith("application")) {
+                body = gzip(body);
+                exchange.getResponseHeaders().set("Content-Encoding", "gzip");
+            }
+            exchange.sendResponseHeaders(200, body.length);
+            write(exchange.getResponseBody(), body);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+    }
+
+    /**
+     * Write a body, sleeping between chunks to keep within the configured bandwidth
+     */
+    private void write(OutputStream out, byte[] body) throws IOException, InterruptedException {
+        if (bytesPerSecond <= 0) {
+            out.write(body);
+            return;
+        }
+        for (int offset = 0; offset < body.length; offset += CHUNK_SIZE) {
+            int length = Math.min(CHUNK_SIZE, body.length - offset);
+            out.write(body, offset, length);
+            out.flush();
+            Thread.sleep(length * 1000L / bytesPerSecond);
+        }
+    }
+
+    private byte[] channels(String query) {
+        return responses.computeIfAbsent("channels", key -> {
+            ArrayNode list = mapper.createArrayNode();
+            for (int i = 0; i < channelCount; i++) {
+                ObjectNode channel = channelFixture.get(i % channelFixture.size()).deepCopy();
+                int round = i / channelFixture.size();
+                if (round > 0) {
+                    channel.put("id", 10000 + i);
+                    channel.put("name", channel.path("name").asText() + " " + (round + 1));
+                }
+                list.add(channel);
+            }
+            return envelope("channels", list);
+        });
+    }
+
+    private byte[] schedule(String query) {
+        Map<String, String> parameters = parse(query);
+        String channelId = parameters.getOrDefault("channelid", "0");
+        LocalDate date = parameters.containsKey("date") ? parseDate(parameters.get("date")) : LocalDate.now(ZONE);
+
+        return responses.computeIfAbsent(channelId + "/" + date, key -> {
+            long dayStart = date.atStartOfDay(ZONE).toInstant().toEpochMilli();
+            long length = 24 * 60 * 60 * 1000L / programsPerDay;
+            ArrayNode list = mapper.createArrayNode();
+            for (int i = 0; i < programsPerDay; i++) {
+                ObjectNode program = scheduleFixture.get(i % scheduleFixture.size()).deepCopy();
+                long start = dayStart + i * length;
+                program.put("starttimeutc", "/Date(" + start + ")/");
+                program.put("endtimeutc", "/Date(" + (start + length) + ")/");
+                if (program.has("imageurl")) {
+                    program.put("imageurl", getBaseUrl() + "/images/" + program.path("program").path("id").asInt()
+                            + ".jpg");
+                    program.remove("imageurltemplate");
+                }
+                list.add(program);
+            }
+            return envelope("schedule", list);
+        });
+    }
+
+    private byte[] envelope(String field, ArrayNode list) {
+        ObjectNode root = mapper.createObjectNode();
+        root.put("copyright", "Copyright Sveriges Radio 2023. All rights reserved.");
+        root.set(field, list);
+        try {
+            return mapper.writeValueAsBytes(root);
+        } catch (IOException e) {
+            throw new IllegalStateException(e);
+        }
+    }
+
+    private static Map<String, String> parse(String query) {
+        Map<String, String> parameters = new HashMap<>();
+        for (String pair : query.split("&")) {
+            int equals = pair.indexOf('=');
+            if (equals > 0) {
+                parameters.put(pair.substring(0, equals), pair.substring(equals + 1));
+            }
+        }
+        return parameters;
+    }
+
+    /**
+     * Parse a date in the form the client sends it, without zero padding, for example 2023-3-7
+     */
+    private static LocalDate parseDate(String date) {
+        String[] parts = date.split("-");
+        return LocalDate.of(Integer.parseInt(parts[0]), Integer.parseInt(parts[1]), Integer.parseInt(parts[2]));
+    }
+
+    private static byte[] gzip(byte[] body) throws IOException {
+        ByteArrayOutputStream compressed = new ByteArrayOutputStream(body.length / 4);
+        try (GZIPOutputStream out = new GZIPOutputStream(compressed)) {
+            out.write(body);
+        }
+        return compressed.toByteArray();
+    }
+
+    /**
+     * Starts a standalone simulator
+     * Arguments: [--port n] [--latency ms] [--bandwidth bytes/s] [--error-rate 0..1] [--channels n] [--programs n]
+     */
+    public static void main(String[] args) throws IOException {
+        ApiSimulator simulator = new ApiSimulator();
+        int port = 8080;
+        for (int i = 0; i + 1 < args.length; i += 2) {
+            switch (args[i]) {
+                case "--port" -> port = Integer.parseInt(args[i + 1]);
+                case "--latency" -> simulator.setLatency(Long.parseLong(args[i + 1]));
+                case "--bandwidth" -> simulator.setBandwidth(Long.parseLong(args[i + 1]));
+                case "--error-rate" -> simulator.setErrorRate(Double.parseDouble(args[i + 1]));
+                case "--channels" -> simulator.setChannelCount(Integer.parseInt(args[i + 1]));
+                case "--programs" -> simulator.setProgramsPerDay(Integer.parseInt(args[i + 1]));
+                default -> throw new IllegalArgumentException("Unknown option " + args[i]);
+            }
+        }
+        simulator.start(port);
+        System.out.println("Simulated API running, start RadioInfo with");
+        System.out.println("  -Dradioinfo.api.url=" + simulator.getApiUrl()
+                + " -Dradioinfo.image.url=" + simulator.getImageUrl());
+    }
+
+    /**
+     * Creates the body for a request
+     */
+    private interface Generator {
+        byte[] generate(String query) throws IOException;
+    }
+}
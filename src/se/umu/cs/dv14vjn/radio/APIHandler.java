@@ -1,261 +1,689 @@
 package se.umu.cs.dv14vjn.radio;
 
-import com.fasterxml.jackson.core.JsonProcessingException;
-import com.fasterxml.jackson.databind.JsonNode;
-import com.fasterxml.jackson.databind.ObjectMapper;
 import se.umu.cs.dv14vjn.radio.channelinfo.Channel;
 import se.umu.cs.dv14vjn.radio.channelinfo.Channels;
 import se.umu.cs.dv14vjn.radio.channelinfo.Program;
 import se.umu.cs.dv14vjn.radio.channelinfo.Schedule;
+import se.umu.cs.dv14vjn.radio.channelinfo.ScheduleDays;
 import se.umu.cs.dv14vjn.radio.gui.DataChangeListener;
+import se.umu.cs.dv14vjn.radio.images.ImageLoader;
+import se.umu.cs.dv14vjn.radio.images.ThumbnailCache;
+import se.umu.cs.dv14vjn.radio.net.HttpClientTransport;
+import se.umu.cs.dv14vjn.radio.net.Response;
+import se.umu.cs.dv14vjn.radio.net.Transport;
+import se.umu.cs.dv14vjn.radio.net.ValidatorCache;
+import se.umu.cs.dv14vjn.radio.storage.ScheduleArchive;
+import se.umu.cs.dv14vjn.radio.storage.SelectionHistory;
+import se.umu.cs.dv14vjn.radio.storage.SnapshotStore;
 
-import javax.swing.*;
-import javax.swing.Timer;
-import java.io.BufferedReader;
+import java.awt.Image;
+import java.io.Closeable;
 import java.io.IOException;
-import java.io.InputStreamReader;
+import java.io.InputStream;
 import java.net.HttpURLConnection;
-import java.net.URL;
-import java.text.DateFormat;
-import java.text.ParseException;
-import java.text.SimpleDateFormat;
+import java.nio.file.Path;
+import java.time.Duration;
+import java.time.LocalDate;
 import java.util.*;
-import java.util.concurrent.ExecutionException;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicReference;
+import java.util.function.UnaryOperator;
 
 /**
  * APIHandler is a class that handles the communication with the API
+ * The channels are published as immutable Channels snapshots through an atomic reference. Every change builds a
+ * new snapshot, so readers on any thread never lock and never see a half-updated channel or schedule.
  * @author Vincent Johansson
  */
-public class APIHandler {
+public class APIHandler implements Closeable {
 
-    private final Channels channels;
-    private final List<DataChangeListener> listeners = new ArrayList<>();
+    private static final Duration REQUEST_TIMEOUT = Duration.ofSeconds(10);
+    private static final int PREFETCH_IMAGES = 10;
+    private static final long CHANNELS_RETRY_MIN = 2000;
+    private static final long CHANNELS_RETRY_MAX = 5 * 60 * 1000;
+
+    private final Configuration configuration;
+    private final AtomicReference<Channels> channels = new AtomicReference<>(Channels.EMPTY);
+    private final List<DataChangeListener> listeners = new CopyOnWriteArrayList<>();
+    private final Transport transport = new HttpClientTransport();
+    private final ValidatorCache validators = new ValidatorCache();
+    private final ExecutorService parser = Executors.newFixedThreadPool(
+            Runtime.getRuntime().availableProcessors(), new DaemonThreadFactory("schedule-parser"));
+    private final ImageLoader imageLoader;
+    private final SnapshotStore snapshotStore;
+    private final ExecutorService snapshotWriter =
+            Executors.newSingleThreadExecutor(new DaemonThreadFactory("snapshot-writer"));
+    private final ScheduleArchive archive;
+    private final RefreshScheduler refreshScheduler;
+    private final SingleFlight<Integer, Boolean> scheduleUpdates = new SingleFlight<>();
+    private final Prefetcher prefetcher;
+    private final AtomicBoolean closed = new AtomicBoolean();
+    private final Thread snapshotOnExit = new Thread(this::writeSnapshot, "snapshot-on-exit");
+    private final AtomicBoolean channelsLoading = new AtomicBoolean();
+    private final AtomicBoolean channelsRetryPlanned = new AtomicBoolean();
+    private volatile boolean channelsDownloaded;
+    private volatile boolean channelsErrorReported;
+    private volatile long channelsRetryDelay = CHANNELS_RETRY_MIN;
 
     /**
-     * Initializes a new se.umu.cs.dv14vjn.radio.APIHandler
+     * Initializes a new se.umu.cs.dv14vjn.radio.APIHandler configured from the system properties
      */
     public APIHandler() {
-        channels = parseChannels();
-        recurringUpdate();
+        this(Configuration.fromSystemProperties());
     }
 
     /**
-     * Get JSON data from the API
-     * @param urlString String URL to the API
-     * @return String JSON data
+     * Initializes a new se.umu.cs.dv14vjn.radio.APIHandler
+     * Returns without waiting for the network, the channel list is downloaded in the background and listeners
+     * are notified through channelsChanged once it has arrived. If a snapshot from an earlier session exists
+     * it is served right away and revalidated in the background.
+     * @param configuration Configuration with the API address and data directory
      */
-    private String getJSONFromURL(String urlString) {
-        StringBuilder jsonData = new StringBuilder();
-        try {
-            URL url = new URL(urlString);
-            HttpURLConnection con = (HttpURLConnection) url.openConnection();
-            con.setRequestMethod("GET");
+    public APIHandler(Configuration configuration) {
+        this.configuration = configuration;
+        Path dataDirectory = configuration.getDataDirectory();
+        imageLoader = new ImageLoader(transport, new ThumbnailCache(configuration.getImageMemoryBytes(),
+                configuration.getThumbnailDirectory(), configuration.getImageDiskBytes()),
+                configuration.getDefaultImageUrl());
+        snapshotStore = new SnapshotStore(dataDirectory.resolve("snapshot.bin"));
+        archive = openArchive(dataDirectory.resolve("history"));
+        refreshScheduler = new RefreshScheduler(configuration.getRefreshConcurrency(),
+                this::refreshSchedule, id -> channels.get().getChannel(id), this::scheduleExpiry);
+        prefetcher = new Prefetcher(new SelectionHistory(dataDirectory.resolve("selections.properties")),
+                configuration.getPrefetchChannels(), channels::get, this::prefetch, this::releasePrefetched);
 
-            /* Verify response from API, if it can't be reached display error message */
-            int status = con.getResponseCode();
-            if (status == HttpURLConnection.HTTP_NOT_FOUND) {
-                SwingUtilities.invokeLater(() -> JOptionPane.showMessageDialog(null,
-                        "Could not connect to the API, please check your internet connection",
-                        "Error", JOptionPane.ERROR_MESSAGE));
-            } else if (status == HttpURLConnection.HTTP_OK) {
-                BufferedReader reader = new BufferedReader(new InputStreamReader(url.openStream()));
-                String buf;
-                while ((buf = reader.readLine()) != null) {
-                    jsonData.append(buf);
+        Channels snapshot = snapshotStore.load();
+        if (snapshot != null) {
+            long currentTime = System.currentTimeMillis();
+            Channels restored = snapshot;
+            for (String name : snapshot.getNames()) {
+                Channel channel = snapshot.getChannel(name);
+                if (channel.isCached()) {
+                    restored = restored.with(channel.withSchedule(channel.getDays(),
+                            window(channel.getDays(), currentTime)));
                 }
-                reader.close();
             }
-        } catch (IOException e) {
-            e.printStackTrace();
+            channels.set(restored);
+            updateCachedSchedules();
+            prefetcher.schedulePass();
         }
-
-        return jsonData.toString();
+        refreshChannels();
+        Runtime.getRuntime().addShutdownHook(snapshotOnExit);
     }
 
     /**
-     * Parse the JSON data from the API into a se.umu.cs.dv14vjn.radio.channelinfo.Channels object
-     * @return se.umu.cs.dv14vjn.radio.channelinfo.Channels object
+     * Request JSON data from the API
+     * @param urlString String URL to the API
+     * @param revalidate true to make the request conditional on the validators of the previous response
+     * @return Response with status 200 or 304, null if the API could not be reached
      */
-    private Channels parseChannels() {
-        SwingWorker<Channels, Void> worker = new SwingWorker<>() {
-            @Override
-            protected Channels doInBackground() {
-                String jsonData = getJSONFromURL(
-                        "http://api.sr.se/api/v2/channels?format=json&pagination=false");
-                ObjectMapper mapper = new ObjectMapper();
-                JsonNode rootNode;
-                try {
-                    rootNode = mapper.readTree(jsonData);
-                } catch (IOException e) {
-                    e.printStackTrace();
-                    return null;
-                }
-
-                Channels channels = new Channels();
-                List<String> channelList = new ArrayList<>();
-                for (JsonNode channelNode : rootNode.path("channels")) {
-                    try {
-                        Channel channel = mapper.treeToValue(channelNode, Channel.class);
-                        if (!Objects.equals(channel.getChanneltype(), "Extrakanaler")) {
-                            channelList.add(channel.getName());
-                            channels.addChannel(channel.getName(), channel);
-                        }
-                    } catch (JsonProcessingException e) {
-                        e.printStackTrace();
-                    }
-                }
+    private Response request(String urlString, boolean revalidate) {
+        return requestAsync(urlString, revalidate).join();
+    }
 
-                String[] channelArray = channelList.toArray(String[]::new);
-                channels.setNamesArray(channelArray);
-                return channels;
+    /**
+     * Request JSON data from the API without waiting for the response
+     * @param urlString String URL to the API
+     * @param revalidate true to make the request conditional on the validators of the previous response
+     * @return CompletableFuture completed with a Response with status 200 or 304, or with null if the API
+     * could not be reached
+     */
+    private CompletableFuture<Response> requestAsync(String urlString, boolean revalidate) {
+        Map<String, String> headers = revalidate ? validators.conditionalHeaders(urlString) : Map.of();
+        return transport.get(urlString, headers, REQUEST_TIMEOUT).handle((response, e) -> {
+            if (e != null) {
+                e.printStackTrace();
+                return null;
             }
+            validators.record(urlString, response);
 
-            @Override
-            protected void done() {
-                notifyDataChangeListeners();
+            /* Verify response from API, if it can't be reached tell the listeners */
+            int status = response.getStatus();
+            if (status == HttpURLConnection.HTTP_OK || status == HttpURLConnection.HTTP_NOT_MODIFIED) {
+                return response;
             }
-        };
-        worker.execute();
+            response.discard();
+            if (status == HttpURLConnection.HTTP_NOT_FOUND) {
+                notifyError("Could not connect to the API, please check your internet connection");
+            }
+            return null;
+        });
+    }
+
+    /**
+     * Open the body of a response
+     * Responses without a body to read, such as 304 Not Modified, are discarded
+     * @param response Response with status 200 or 304, may be null
+     * @return InputStream with the JSON data, null if there is no body to read
+     */
+    private InputStream openBody(Response response) {
+        if (response == null) {
+            return null;
+        }
+        if (response.getStatus() != HttpURLConnection.HTTP_OK) {
+            response.discard();
+            return null;
+        }
         try {
-            return worker.get();
-        } catch (InterruptedException | ExecutionException e) {
+            return response.getBody();
+        } catch (IOException e) {
             e.printStackTrace();
             return null;
         }
     }
 
+    /**
+     * Download and parse the channel list
+     * @return se.umu.cs.dv14vjn.radio.channelinfo.Channels object, null if it could not be downloaded
+     */
+    private Channels downloadChannels() {
+        InputStream jsonData = openBody(request(configuration.getChannelsUrl(), false));
+        if (jsonData == null) {
+            return null;
+        }
+        List<Channel> channelObjects = new ArrayList<>();
+        try {
+            ResponseParser.parseChannels(jsonData,
+                    channel -> !Objects.equals(channel.getChanneltype(), "Extrakanaler"), channelObjects);
+        } catch (IOException e) {
+            e.printStackTrace();
+            return null;
+        }
+        return new Channels(channelObjects);
+    }
+
+    /**
+     * Download the channel list in the background and merge it into the current channels
+     * Channels that are still listed keep their cached schedules. If the download fails it is retried with a
+     * growing delay until it succeeds, listeners are told about the failure once.
+     */
+    private void refreshChannels() {
+        if (!channelsLoading.compareAndSet(false, true)) {
+            return;
+        }
+        CompletableFuture.supplyAsync(this::downloadChannels, parser).exceptionally(e -> {
+            e.printStackTrace();
+            return null;
+        }).thenAccept(fresh -> {
+            channelsLoading.set(false);
+            if (fresh == null) {
+                retryChannels();
+                return;
+            }
+            channelsDownloaded = true;
+            channelsRetryDelay = CHANNELS_RETRY_MIN;
+            channels.updateAndGet(current -> current.merge(fresh));
+            saveSnapshot();
+            notifyChannelsChanged();
+            prefetcher.schedulePass();
+        });
+    }
+
+    /**
+     * Plan another download of the channel list after the current retry delay and double the delay for the next
+     * failure, only one retry is planned at a time
+     */
+    private void retryChannels() {
+        if (!channelsRetryPlanned.compareAndSet(false, true)) {
+            return;
+        }
+        long delay = channelsRetryDelay;
+        channelsRetryDelay = Math.min(delay * 2, CHANNELS_RETRY_MAX);
+        /* Told once, as soon as someone listens, the GUI may register after the first attempt has failed */
+        if (!channelsErrorReported && !listeners.isEmpty()) {
+            channelsErrorReported = true;
+            notifyError("Could not download the channel list, please check your internet connection. "
+                    + "Retrying in the background.");
+        }
+        CompletableFuture.runAsync(() -> {
+            channelsRetryPlanned.set(false);
+            refreshChannels();
+        }, CompletableFuture.delayedExecutor(delay, TimeUnit.MILLISECONDS, parser));
+    }
+
     /**
      * Parse the JSON data from the API into a se.umu.cs.dv14vjn.radio.channelinfo.Schedule object
+     * The schedule is returned as soon as the JSON has been parsed, program images are loaded once the
+     * programs are shown with showPrograms
      * @param channel se.umu.cs.dv14vjn.radio.channelinfo.Channel object
      * @return se.umu.cs.dv14vjn.radio.channelinfo.Schedule object
      */
     public Schedule parseSchedule(Channel channel) {
+        updateSchedule(channel.getId(), false);
+        Channel latest = channels.get().getChannel(channel.getId());
+        return latest != null ? latest.getSchedule() : null;
+    }
 
-        /*
-         * Get current time and calculate time 6 hours before and 12 hours from now
-         * Reformat to Calendar object for validation of date
-         */
+    /**
+     * Bring the stored days of a channel up to date and cut its schedule for the current window
+     * A caller arriving while the channel is already being updated waits for that update instead of
+     * downloading the same days again
+     * @param channelId int id of the channel
+     * @param revalidate true to revalidate the days already stored
+     * @return true if a new version of the channel was published
+     */
+    private boolean updateSchedule(int channelId, boolean revalidate) {
+        return scheduleUpdates.execute(channelId, () -> downloadSchedule(channelId, revalidate));
+    }
+
+    /**
+     * Bring the stored days of a channel up to date and cut its schedule for the current window
+     * Days that enter the window are downloaded and parsed in parallel, days that left it are dropped. Days
+     * already stored are only revalidated when asked to and once the server says they have expired, with
+     * conditional requests so that unchanged days are neither downloaded nor parsed again.
+     * @param channelId int id of the channel
+     * @param revalidate true to revalidate the days already stored
+     * @return true if a new version of the channel was published
+     */
+    private boolean downloadSchedule(int channelId, boolean revalidate) {
+        Channel channel = channels.get().getChannel(channelId);
+        if (channel == null) {
+            return false;
+        }
         long currentTime = System.currentTimeMillis();
-        long sixHoursAgo = currentTime - (6 * 60 * 60 * 1000);
-        long twelveHoursFromNow = currentTime + (12 * 60 * 60 * 1000);
-        Calendar currentCal = Calendar.getInstance();
-        Calendar sixHoursAgoCal = Calendar.getInstance();
-        Calendar twelveHoursFromNowCal = Calendar.getInstance();
-        currentCal.setTimeInMillis(currentTime);
-        sixHoursAgoCal.setTimeInMillis(sixHoursAgo);
-        twelveHoursFromNowCal.setTimeInMillis(twelveHoursFromNow);
-
-        List<Program> filteredSchedule = new ArrayList<>();
-        String jsonData;
-
-        /* If sixHoursAgo is before 00:00, get yesterday's schedule first */
-        if (sixHoursAgoCal.get(Calendar.DATE) < currentCal.get(Calendar.DATE)) {
-            String date = sixHoursAgoCal.get(Calendar.YEAR) + "-" + (sixHoursAgoCal.get(Calendar.MONTH) + 1) + "-" +
-                    sixHoursAgoCal.get(Calendar.DATE);
-            jsonData = getJSONFromURL("http://api.sr.se/api/v2/scheduledepisodes?channelid="
-                    + channel.getId() + "&format=json&pagination=false&date=" + date);
-            filterPrograms(filteredSchedule, jsonData);
-        }
-
-        /* Get today's schedule */
-        jsonData = getJSONFromURL("http://api.sr.se/api/v2/scheduledepisodes?channelid="
-                            + channel.getId() + "&format=json&pagination=false");
-        filterPrograms(filteredSchedule, jsonData);
-
-        /* If twelveHoursFromNow is after 23:59, get tomorrow's schedule last */
-        if (twelveHoursFromNowCal.get(Calendar.DATE) > currentCal.get(Calendar.DATE)) {
-            String date = twelveHoursFromNowCal.get(Calendar.YEAR) + "-" +
-                    (twelveHoursFromNowCal.get(Calendar.MONTH) + 1) + "-" + twelveHoursFromNowCal.get(Calendar.DATE);
-            jsonData = getJSONFromURL("http://api.sr.se/api/v2/scheduledepisodes?channelid="
-                    + channel.getId() + "&format=json&pagination=false&date=" + date);
-            filterPrograms(filteredSchedule, jsonData);
-        }
-
-        /* Create Schedule object, reformat list to array and add to the new Schedule object */
-        Program[] programs = filteredSchedule.toArray(Program[]::new);
-        Schedule schedule = new Schedule();
-        schedule.setSchedule(programs);
-        return schedule;
-    }
-
-    /**
-     * Filter the JSON data from the API into a se.umu.cs.dv14vjn.radio.channelinfo.Program object
-     * @param lst List of se.umu.cs.dv14vjn.radio.channelinfo.Program objects
-     * @param jsonData String JSON data
-     */
-    private void filterPrograms(List<Program> lst, String jsonData) {
-        ObjectMapper mapper = new ObjectMapper();
-        JsonNode rootNode = null;
+        List<LocalDate> dates = configuration.getWindowDates(currentTime);
+        ScheduleDays days = channel.getDays().retain(dates.get(0), dates.get(dates.size() - 1));
+
+        /* Request all days that are missing or due for revalidation at once */
+        Map<LocalDate, CompletableFuture<Program[]>> downloads = new LinkedHashMap<>();
+        for (LocalDate date : dates) {
+            String url = configuration.getScheduleUrl(channel.getId(), date);
+            boolean stored = days.contains(date);
+            if (!stored || (revalidate && validators.getExpiry(url) <= currentTime)) {
+                downloads.put(date, requestAsync(url, stored)
+                        .thenApplyAsync(response -> parseDay(openBody(response)), parser)
+                        .exceptionally(e -> {
+                            e.printStackTrace();
+                            return null;
+                        }));
+            }
+        }
+
+        /* A day that was not modified or failed keeps what is stored for it */
+        boolean changed = false;
+        for (Map.Entry<LocalDate, CompletableFuture<Program[]>> download : downloads.entrySet()) {
+            Program[] programs = download.getValue().join();
+            if (programs != null) {
+                days = days.withDay(download.getKey(), programs);
+                changed = true;
+            }
+        }
+
+        /* The window moves with the time even if no day changed */
+        Schedule previous = channel.getSchedule();
+        Schedule schedule = window(days, currentTime);
+        if (!changed && previous != null && Arrays.equals(previous.getSchedule(), schedule.getSchedule())) {
+            return false;
+        }
+        ScheduleDays updatedDays = days;
+        return update(channelId, latest -> latest.withSchedule(updatedDays, schedule)) != null;
+    }
+
+    /**
+     * Publish a new version of a channel, the change is applied to the latest version and retried if another
+     * thread published in between
+     * @param channelId int id of the channel
+     * @param change UnaryOperator returning the new version of the channel
+     * @return se.umu.cs.dv14vjn.radio.channelinfo.Channel object that was published, null if the channel is gone
+     */
+    private Channel update(int channelId, UnaryOperator<Channel> change) {
+        return channels.updateAndGet(current -> {
+            Channel latest = current.getChannel(channelId);
+            return latest != null ? current.with(change.apply(latest)) : current;
+        }).getChannel(channelId);
+    }
+
+    /**
+     * Cut the schedule of a channel from its stored days
+     * @param days ScheduleDays object of the channel
+     * @param currentTime long time in milliseconds since the epoch the window is centered on
+     * @return se.umu.cs.dv14vjn.radio.channelinfo.Schedule object with the programs starting inside the window
+     */
+    private Schedule window(ScheduleDays days, long currentTime) {
+        return days.window(currentTime - configuration.getWindowBefore().toMillis(),
+                currentTime + configuration.getWindowAfter().toMillis());
+    }
+
+    /**
+     * Fetch the schedule of a channel and keep it cached for later views
+     * From then on the schedule is refreshed in the background by the refresh scheduler. Prefetching is
+     * held back while the schedule is fetched. If no day of the schedule could be downloaded the channel is not
+     * cached, and the next call tries again.
+     * @param channel se.umu.cs.dv14vjn.radio.channelinfo.Channel object
+     * @return se.umu.cs.dv14vjn.radio.channelinfo.Channel object with the schedule, null if the channel is gone
+     */
+    public Channel cacheSchedule(Channel channel) {
+        prefetcher.foregroundStarted();
         try {
-            rootNode= mapper.readTree(jsonData);
-        } catch (JsonProcessingException e) {
-            e.printStackTrace();
+            return fetchAndCache(channel.getId());
+        } finally {
+            prefetcher.foregroundFinished();
         }
-        DateFormat formatter = new SimpleDateFormat("dd/MM/yy HH:mm:ss");
-        long currentTime = System.currentTimeMillis();
-        long sixHoursAgo = currentTime - (6 * 60 * 60 * 1000);
-        long twelveHoursFromNow = currentTime + (12 * 60 * 60 * 1000);
+    }
 
-        /* Loop through all programs adding the ones matching requirements to list */
-        assert rootNode != null;
-        for (JsonNode programNode : rootNode.get("schedule")) {
-            try {
-                Program program = mapper.treeToValue(programNode, Program.class);
-                Date startTime = formatter.parse(program.getLocalTime(program.getStarttimeutc()));
-                /* Only acquire programs that are within 6 hours before and 12 hours from now */
-                if (currentTime >= startTime.getTime() && startTime.getTime() >= sixHoursAgo) {
-                    program.setImage();
-                    lst.add(program);
-                } else if (currentTime <= startTime.getTime()&& startTime.getTime() <= twelveHoursFromNow) {
-                    program.setImage();
-                    lst.add(program);
-                }
-            } catch (ParseException | JsonProcessingException e) {
-                e.printStackTrace();
-            } catch (IOException e) {
-                throw new RuntimeException(e);
+    /**
+     * Fetch the schedule of a channel, mark it cached and plan its refreshes
+     * A channel of which no day could be downloaded is left uncached, so that the next request tries again
+     * @param channelId int id of the channel
+     * @return se.umu.cs.dv14vjn.radio.channelinfo.Channel object with the schedule, null if the channel is gone
+     */
+    private Channel fetchAndCache(int channelId) {
+        updateSchedule(channelId, false);
+        Channel loaded = channels.get().getChannel(channelId);
+        if (loaded == null || loaded.getDays().getDates().isEmpty()) {
+            return loaded;
+        }
+        Channel cached = update(channelId, APIHandler::markCached);
+
+        /* A prefetched schedule released by the prefetcher in between is fetched again, once the channel is
+         * cached it is never released */
+        if (cached != null && !cached.isCached()) {
+            updateSchedule(channelId, false);
+            cached = update(channelId, APIHandler::markCached);
+        }
+        if (cached == null || !cached.isCached()) {
+            return cached;
+        }
+        saveSnapshot();
+        archiveSchedule(channelId);
+        refreshScheduler.plan(channelId);
+        return cached;
+    }
+
+    /**
+     * Returns a channel marked as cached if it holds at least one downloaded day
+     * @param channel se.umu.cs.dv14vjn.radio.channelinfo.Channel object
+     * @return Channel object marked cached, or the channel unchanged if it has no days
+     */
+    private static Channel markCached(Channel channel) {
+        return channel.getDays().getDates().isEmpty() ? channel : channel.asCached();
+    }
+
+    /**
+     * Download the schedule of a channel the user is likely to open next, called by the prefetcher while idle
+     * Only the days are kept in memory, the channel is not marked cached, written to the snapshot, archived or
+     * refreshed until the user opens it. The first images of the schedule are downloaded as well if configured,
+     * one at a time so that the prefetcher can give way to the foreground between them.
+     * @param channelId int id of the channel
+     */
+    private void prefetch(int channelId) {
+        updateSchedule(channelId, false);
+        Channel warmed = channels.get().getChannel(channelId);
+        if (!configuration.isPrefetchImages() || warmed == null || warmed.getSchedule() == null) {
+            return;
+        }
+        Schedule schedule = warmed.getSchedule();
+        Program[] programs = schedule.getSchedule();
+        int first = schedule.rangeStart(System.currentTimeMillis());
+        for (int i = first; i < programs.length && i < first + PREFETCH_IMAGES; i++) {
+            if (!prefetcher.isIdle()) {
+                return;
+            }
+            imageLoader.prefetch(programs[i]);
+        }
+    }
+
+    /**
+     * Drop the prefetched schedule of a channel that is no longer likely to be opened, cached channels keep theirs
+     * @param channelId int id of the channel
+     */
+    private void releasePrefetched(int channelId) {
+        update(channelId, latest -> latest.isCached() ? latest : latest.withSchedule(ScheduleDays.EMPTY, null));
+    }
+
+    /**
+     * Record that the user selected a channel, the channels most likely to be selected after it are
+     * prefetched once the application is idle
+     * @param channel se.umu.cs.dv14vjn.radio.channelinfo.Channel object that was selected
+     */
+    public void channelSelected(Channel channel) {
+        prefetcher.selected(channel);
+    }
+
+    /**
+     * Move the window of a cached channel and revalidate its days, called by the refresh scheduler on one
+     * of its workers
+     * Listeners are only notified if the schedule changed, programs that have aired since the last refresh are
+     * archived either way
+     * @param channelId int id of the channel
+     */
+    private void refreshSchedule(int channelId) {
+        if (updateSchedule(channelId, true)) {
+            saveSnapshot();
+            notifyDataChangeListeners(channelId);
+        }
+        archiveSchedule(channelId);
+    }
+
+    /**
+     * Returns when the first day in the window of a channel expires according to the server's cache headers
+     * @param channel se.umu.cs.dv14vjn.radio.channelinfo.Channel object
+     * @return long time in milliseconds since the epoch, 0 if the server did not say
+     */
+    private long scheduleExpiry(Channel channel) {
+        long earliest = 0;
+        for (LocalDate date : configuration.getWindowDates(System.currentTimeMillis())) {
+            long expiry = validators.getExpiry(configuration.getScheduleUrl(channel.getId(), date));
+            if (expiry > 0 && (earliest == 0 || expiry < earliest)) {
+                earliest = expiry;
             }
         }
+        return earliest;
     }
 
     /**
-     * Initialize background thread that updates cached data every 60 minutes
+     * Parse the JSON data of one day from the API into se.umu.cs.dv14vjn.radio.channelinfo.Program objects
+     * @param jsonData InputStream with JSON data, null if the request failed or the day was not modified
+     * @return Program array with every program of the day, null if there was nothing to parse
      */
-    private void recurringUpdate() {
-        Timer timer = new Timer(3600000, e -> updateCachedSchedules());
-        timer.setRepeats(true);
-        timer.start();
+    private Program[] parseDay(InputStream jsonData) {
+        if (jsonData == null) {
+            return null;
+        }
+        List<Program> lst = new ArrayList<>();
+        try {
+            ResponseParser.parsePrograms(jsonData, program -> true, lst);
+        } catch (IOException e) {
+            e.printStackTrace();
+            return null;
+        }
+        return lst.toArray(Program[]::new);
     }
 
     /**
      * Update cached data
+     * Every cached channel is revalidated right away with conditional requests, at most as many at a time as
+     * the configured refresh concurrency, and listeners are notified for each schedule that changed. The channel
+     * list is downloaded right away as well if it has not been downloaded yet.
      */
     public void updateCachedSchedules() {
-        SwingWorker<Void, Void> worker = new SwingWorker<>() {
-            @Override
-            protected Void doInBackground() {
-                for (String channel : channels.getNames()) {
-                    if (channels.getChannel(channel).isCached()) {
-                        channels.getChannel(channel).setSchedule(parseSchedule(channels.getChannel(channel)));
-                    }
-                }
-                return null;
+        if (!channelsDownloaded) {
+            refreshChannels();
+        }
+        Channels current = channels.get();
+        for (String name : current.getNames()) {
+            Channel channel = current.getChannel(name);
+            if (channel.isCached()) {
+                refreshScheduler.refreshNow(channel.getId());
             }
+        }
+    }
+
+    /**
+     * Write the snapshot in the background
+     */
+    private void saveSnapshot() {
+        snapshotWriter.execute(this::writeSnapshot);
+    }
 
-            @Override
-            protected void done() {
-                notifyDataChangeListeners();
+    /**
+     * Write the channels and cached schedules to the snapshot file
+     */
+    private void writeSnapshot() {
+        try {
+            snapshotStore.save(channels.get());
+        } catch (IOException e) {
+            e.printStackTrace();
+        }
+    }
+
+    /**
+     * Open the schedule archive
+     * @param directory Path to the directory of the archive
+     * @return ScheduleArchive, null if it could not be opened and history is not kept
+     */
+    private static ScheduleArchive openArchive(Path directory) {
+        try {
+            return new ScheduleArchive(directory);
+        } catch (IOException e) {
+            e.printStackTrace();
+            return null;
+        }
+    }
+
+    /**
+     * Archive the programs of a channel that have aired, in the background on the snapshot writer thread
+     * which keeps the disk writes off the refresh workers and in order
+     * @param channelId int id of the channel
+     */
+    private void archiveSchedule(int channelId) {
+        if (archive == null) {
+            return;
+        }
+        snapshotWriter.execute(() -> {
+            Channel channel = channels.get().getChannel(channelId);
+            if (channel == null) {
+                return;
+            }
+            long currentTime = System.currentTimeMillis();
+            try {
+                /* All stored days are used, not only the window, so nothing is missed between refreshes. The
+                 * programs after the current one are passed along since they give the end of programs without
+                 * an end time. */
+                long last = archive.getLastStart(channelId);
+                archive.append(channelId, channel.getDays().window(last + 1, Long.MAX_VALUE).getSchedule(),
+                        currentTime);
+            } catch (IOException e) {
+                e.printStackTrace();
             }
-        };
-        worker.execute();
+        });
     }
 
     /**
-     * Get Channel[] array with all channels
-     * @return Channel[] array with all channels
+     * Stop all background work and release the files
+     * Prefetching, refreshes, image downloads and parsing are stopped first, so nothing new is queued for the
+     * snapshot writer. The writer then finishes its queued snapshots and archive appends and writes a last
+     * snapshot before the archive is closed. Listeners are not notified of anything after this. Calling it again
+     * does nothing.
+     */
+    @Override
+    public void close() {
+        if (!closed.compareAndSet(false, true)) {
+            return;
+        }
+        try {
+            Runtime.getRuntime().removeShutdownHook(snapshotOnExit);
+        } catch (IllegalStateException e) {
+            /* Already shutting down, the hook writes the snapshot as well */
+        }
+        listeners.clear();
+        prefetcher.shutdown();
+        refreshScheduler.shutdown();
+        imageLoader.shutdown();
+        parser.shutdownNow();
+        transport.close();
+
+        snapshotWriter.execute(this::writeSnapshot);
+        snapshotWriter.shutdown();
+        try {
+            if (!snapshotWriter.awaitTermination(10, TimeUnit.SECONDS)) {
+                snapshotWriter.shutdownNow();
+            }
+        } catch (InterruptedException e) {
+            snapshotWriter.shutdownNow();
+            Thread.currentThread().interrupt();
+        }
+        if (archive != null) {
+            try {
+                archive.close();
+            } catch (IOException e) {
+                e.printStackTrace();
+            }
+        }
+    }
+
+    /**
+     * Returns the archive with the history of the programs that have aired on the cached channels
+     * @return ScheduleArchive, null if the archive could not be opened
+     */
+    public ScheduleArchive getArchive() {
+        return archive;
+    }
+
+    /**
+     * Get Channels object with all channels
+     * @return latest immutable Channels snapshot, empty until the channel list has been downloaded
      */
     public Channels getChannels() {
-        return channels;
+        return channels.get();
+    }
+
+    /**
+     * Show a set of programs, only the images of the programs last shown are kept in memory
+     * @param programs Program array that is shown
+     */
+    public void showPrograms(Program[] programs) {
+        imageLoader.show(programs);
+    }
+
+    /**
+     * Load the images of programs in the given order, cancelling the images requested before that have not
+     * started loading
+     * Listeners are notified through imageLoaded as each image becomes available
+     * @param programs List of programs, the most important first, empty to only cancel
+     */
+    public void requestImages(List<Program> programs) {
+        prefetcher.foregroundActivity();
+        imageLoader.request(programs, this::notifyImageLoaded);
+    }
+
+    /**
+     * Returns the image of a program if it is held in memory
+     * @param program Program whose image is shown
+     * @return Image scaled for the schedule table, null if it is still loading
+     */
+    public Image getImage(Program program) {
+        return imageLoader.getImage(program);
+    }
+
+    /**
+     * Returns the cache holding the scaled program images
+     * @return ThumbnailCache with memory usage, hit, miss and eviction counters
+     */
+    public ThumbnailCache getThumbnailCache() {
+        return imageLoader.getCache();
+    }
+
+    /**
+     * Returns the stored response validators
+     * @return ValidatorCache with counters for 304 and 200 responses
+     */
+    public ValidatorCache getValidatorCache() {
+        return validators;
+    }
+
+    /**
+     * Returns the number of schedule updates and image downloads that were shared with one already in flight
+     * instead of being requested again
+     * @return long number of deduplicated requests
+     */
+    public long getDeduplicatedCount() {
+        return scheduleUpdates.getDeduplicatedCount() + imageLoader.getDeduplicatedCount();
     }
 
     /**
@@ -275,11 +703,41 @@ public class APIHandler {
     }
 
     /**
-     * Notify all listeners that data has changed
+     * Notify all listeners that the schedule of a channel has changed
+     * @param channelId int id of the channel whose schedule changed
+     */
+    private void notifyDataChangeListeners(int channelId) {
+        for (DataChangeListener listener : listeners) {
+            listener.dataChanged(channelId);
+        }
+    }
+
+    /**
+     * Notify all listeners that the channel list has changed
+     */
+    private void notifyChannelsChanged() {
+        for (DataChangeListener listener : listeners) {
+            listener.channelsChanged();
+        }
+    }
+
+    /**
+     * Notify all listeners that the image of a program has been loaded
+     * @param program Program whose image was loaded
+     */
+    private void notifyImageLoaded(Program program) {
+        for (DataChangeListener listener : listeners) {
+            listener.imageLoaded(program);
+        }
+    }
+
+    /**
+     * Notify all listeners that a request to the API failed
+     * @param message String describing the error to the user
      */
-    private void notifyDataChangeListeners() {
+    private void notifyError(String message) {
         for (DataChangeListener listener : listeners) {
-            listener.dataChanged();
+            listener.errorOccurred(message);
         }
     }
 }
@@ -2,15 +2,47 @@ package se.umu.cs.dv14vjn.radio;
 
 import com.formdev.flatlaf.FlatDarkLaf;
 import se.umu.cs.dv14vjn.radio.gui.GUI;
+import se.umu.cs.dv14vjn.radio.server.ScheduleServer;
 
 import javax.swing.*;
+import java.awt.GraphicsEnvironment;
+import java.io.IOException;
+import java.net.InetSocketAddress;
 
 public class Client {
     public static void main(String[] args) {
+        /* Start loading the channels first so the download runs while the look and feel is set up */
+        Configuration configuration = Configuration.fromSystemProperties();
+        APIHandler handler = new APIHandler(configuration);
+
+        /* Share the schedules with other clients if a server port is configured */
+        ScheduleServer server = null;
+        if (configuration.getServerPort() > 0) {
+            try {
+                server = new ScheduleServer(handler, new InetSocketAddress(configuration.getServerPort()),
+                        configuration.getServerThreads());
+                server.start();
+
+                /* Stop serving and release the handler's files when the process is stopped */
+                ScheduleServer started = server;
+                Runtime.getRuntime().addShutdownHook(new Thread(() -> {
+                    started.stop();
+                    handler.close();
+                }, "server-shutdown"));
+            } catch (IOException e) {
+                e.printStackTrace();
+            }
+        }
+
+        /* Without a display the application only serves the schedules */
+        if (server != null && GraphicsEnvironment.isHeadless()) {
+            return;
+        }
+
         /* Use the FlatLaf Dark look and feel */
         FlatDarkLaf.setup();
 
         /* Start the GUI */
-        SwingUtilities.invokeLater(GUI::new);
+        SwingUtilities.invokeLater(() -> new GUI(handler));
     }
-}
\ No newline at end of file
+}
@@ -0,0 +1,333 @@
+package se.umu.cs.dv14vjn.radio;
+
+import java.nio.file.Path;
+import java.time.Duration;
+import java.time.Instant;
+import java.time.LocalDate;
+import java.time.ZoneId;
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * Configuration object that stores the addresses, directories and limits used by the application
+ * Every value can be overridden with a system property, for example -Dradioinfo.api.url=http://localhost:8080/api/v2
+ * @author Vincent Johansson
+ */
+public class Configuration {
+
+    private String apiUrl = "http://api.sr.se/api/v2";
+    private String defaultImageUrl = "https://static-cdn.sr.se/images/content/default-list-image.png";
+    private Path dataDirectory = Path.of(System.getProperty("user.home"), ".radioinfo");
+    private int refreshConcurrency = 4;
+    private long imageMemoryBytes = 16 * 1024 * 1024;
+    private long imageDiskBytes = 64 * 1024 * 1024;
+    private Duration windowBefore = Duration.ofHours(6);
+    private Duration windowAfter = Duration.ofHours(12);
+    private int prefetchChannels = 3;
+    private boolean prefetchImages = false;
+    private int crawlConcurrency = 16;
+    private double crawlRate = 20;
+    private int serverPort = 0;
+    private int serverThreads = 8;
+
+    /**
+     * Create a configuration from the system properties, using the defaults for anything not set
+     * @return Configuration object
+     */
+    public static Configuration fromSystemProperties() {
+        Configuration configuration = new Configuration();
+        configuration.setApiUrl(System.getProperty("radioinfo.api.url", configuration.getApiUrl()));
+        configuration.setDefaultImageUrl(System.getProperty("radioinfo.image.url",
+                configuration.getDefaultImageUrl()));
+        configuration.setDataDirectory(Path.of(System.getProperty("radioinfo.data.dir",
+                configuration.getDataDirectory().toString())));
+        configuration.setRefreshConcurrency(Integer.getInteger("radioinfo.refresh.concurrency",
+                configuration.getRefreshConcurrency()));
+        configuration.setImageMemoryBytes(Long.getLong("radioinfo.image.memory.mb",
+                configuration.getImageMemoryBytes() / (1024 * 1024)) * 1024 * 1024);
+        configuration.setImageDiskBytes(Long.getLong("radioinfo.image.disk.mb",
+                configuration.getImageDiskBytes() / (1024 * 1024)) * 1024 * 1024);
+        configuration.setWindowBefore(Duration.ofHours(Integer.getInteger("radioinfo.window.before",
+                (int) configuration.getWindowBefore().toHours())));
+        configuration.setWindowAfter(Duration.ofHours(Integer.getInteger("radioinfo.window.after",
+                (int) configuration.getWindowAfter().toHours())));
+        configuration.setPrefetchChannels(Integer.getInteger("radioinfo.prefetch.channels",
+                configuration.getPrefetchChannels()));
+        configuration.setPrefetchImages(Boolean.parseBoolean(System.getProperty("radioinfo.prefetch.images",
+                Boolean.toString(configuration.isPrefetchImages()))));
+        configuration.setCrawlConcurrency(Integer.getInteger("radioinfo.crawl.concurrency",
+                configuration.getCrawlConcurrency()));
+        configuration.setCrawlRate(Double.parseDouble(System.getProperty("radioinfo.crawl.rate",
+                Double.toString(configuration.getCrawlRate()))));
+        configuration.setServerPort(Integer.getInteger("radioinfo.server.port", configuration.getServerPort()));
+        configuration.setServerThreads(Integer.getInteger("radioinfo.server.threads",
+                configuration.getServerThreads()));
+        return configuration;
+    }
+
+    /**
+     * Returns the URL of the channel list
+     * @return String URL
+     */
+    public String getChannelsUrl() {
+        return apiUrl + "/channels?format=json&pagination=false";
+    }
+
+    /**
+     * Returns the URL of the schedule of one day
+     * @param channelId int id of the channel
+     * @param date LocalDate of the day
+     * @return String URL
+     */
+    public String getScheduleUrl(int channelId, LocalDate date) {
+        return apiUrl + "/scheduledepisodes?channelid=" + channelId + "&format=json&pagination=false&date=" + date;
+    }
+
+    /**
+     * Returns the days covered by the schedule window around a time
+     * @param currentTime long time in milliseconds since the epoch the window is centered on
+     * @return List of dates in day order
+     */
+    public List<LocalDate> getWindowDates(long currentTime) {
+        ZoneId zone = ZoneId.systemDefault();
+        LocalDate first = Instant.ofEpochMilli(currentTime - windowBefore.toMillis()).atZone(zone).toLocalDate();
+        LocalDate last = Instant.ofEpochMilli(currentTime + windowAfter.toMillis()).atZone(zone).toLocalDate();
+        List<LocalDate> dates = new ArrayList<>();
+        for (LocalDate date = first; !date.isAfter(last); date = date.plusDays(1)) {
+            dates.add(date);
+        }
+        return dates;
+    }
+
+    /**
+     * Returns the base URL of the API
+     * @return String URL without a trailing slash
+     */
+    public String getApiUrl() {
+        return apiUrl;
+    }
+
+    /**
+     * Sets the base URL of the API
+     * @param apiUrl String URL without a trailing slash
+     */
+    public void setApiUrl(String apiUrl) {
+        this.apiUrl = apiUrl;
+    }
+
+    /**
+     * Returns the URL of the image shown for programs without one
+     * @return String URL
+     */
+    public String getDefaultImageUrl() {
+        return defaultImageUrl;
+    }
+
+    /**
+     * Sets the URL of the image shown for programs without one
+     * @param defaultImageUrl String URL
+     */
+    public void setDefaultImageUrl(String defaultImageUrl) {
+        this.defaultImageUrl = defaultImageUrl;
+    }
+
+    /**
+     * Returns the directory for the snapshot and thumbnail cache
+     * @return Path to the directory
+     */
+    public Path getDataDirectory() {
+        return dataDirectory;
+    }
+
+    /**
+     * Sets the directory for the snapshot and thumbnail cache
+     * @param dataDirectory Path to the directory
+     */
+    public void setDataDirectory(Path dataDirectory) {
+        this.dataDirectory = dataDirectory;
+    }
+
+    /**
+     * Returns the number of channels that may be refreshed at the same time
+     * @return int maximum number of concurrent refreshes
+     */
+    public int getRefreshConcurrency() {
+        return refreshConcurrency;
+    }
+
+    /**
+     * Sets the number of channels that may be refreshed at the same time
+     * @param refreshConcurrency int maximum number of concurrent refreshes
+     */
+    public void setRefreshConcurrency(int refreshConcurrency) {
+        this.refreshConcurrency = refreshConcurrency;
+    }
+
+    /**
+     * Returns the number of bytes of decoded program images that may be kept in memory
+     * @return long memory budget in bytes
+     */
+    public long getImageMemoryBytes() {
+        return imageMemoryBytes;
+    }
+
+    /**
+     * Sets the number of bytes of decoded program images that may be kept in memory
+     * @param imageMemoryBytes long memory budget in bytes
+     */
+    public void setImageMemoryBytes(long imageMemoryBytes) {
+        this.imageMemoryBytes = imageMemoryBytes;
+    }
+
+    /**
+     * Returns the number of bytes of program image files that may be kept on disk
+     * @return long disk budget in bytes, 0 if images are not kept on disk
+     */
+    public long getImageDiskBytes() {
+        return imageDiskBytes;
+    }
+
+    /**
+     * Sets the number of bytes of program image files that may be kept on disk
+     * @param imageDiskBytes long disk budget in bytes, 0 to not keep images on disk
+     */
+    public void setImageDiskBytes(long imageDiskBytes) {
+        this.imageDiskBytes = imageDiskBytes;
+    }
+
+    /**
+     * Returns the directory program images are kept in on disk
+     * @return Path inside the data directory, null if images are not kept on disk
+     */
+    public Path getThumbnailDirectory() {
+        return imageDiskBytes > 0 ? dataDirectory.resolve("thumbnails") : null;
+    }
+
+    /**
+     * Returns how far back the shown schedule reaches
+     * @return Duration before the current time
+     */
+    public Duration getWindowBefore() {
+        return windowBefore;
+    }
+
+    /**
+     * Sets how far back the shown schedule reaches
+     * @param windowBefore Duration before the current time
+     */
+    public void setWindowBefore(Duration windowBefore) {
+        this.windowBefore = windowBefore;
+    }
+
+    /**
+     * Returns how far ahead the shown schedule reaches
+     * @return Duration after the current time
+     */
+    public Duration getWindowAfter() {
+        return windowAfter;
+    }
+
+    /**
+     * Sets how far ahead the shown schedule reaches
+     * @param windowAfter Duration after the current time
+     */
+    public void setWindowAfter(Duration windowAfter) {
+        this.windowAfter = windowAfter;
+    }
+
+    /**
+     * Returns the number of channels most likely to be opened next whose schedules are prefetched while idle
+     * @return int number of channels, 0 if prefetching is disabled
+     */
+    public int getPrefetchChannels() {
+        return prefetchChannels;
+    }
+
+    /**
+     * Sets the number of channels most likely to be opened next whose schedules are prefetched while idle
+     * @param prefetchChannels int number of channels, 0 to disable prefetching
+     */
+    public void setPrefetchChannels(int prefetchChannels) {
+        this.prefetchChannels = prefetchChannels;
+    }
+
+    /**
+     * Returns whether the first program images of prefetched channels are downloaded as well
+     * @return true if images are prefetched
+     */
+    public boolean isPrefetchImages() {
+        return prefetchImages;
+    }
+
+    /**
+     * Sets whether the first program images of prefetched channels are downloaded as well
+     * @param prefetchImages true to prefetch images
+     */
+    public void setPrefetchImages(boolean prefetchImages) {
+        this.prefetchImages = prefetchImages;
+    }
+
+    /**
+     * Returns the number of channels a crawl downloads at the same time
+     * @return int number of channels
+     */
+    public int getCrawlConcurrency() {
+        return crawlConcurrency;
+    }
+
+    /**
+     * Sets the number of channels a crawl downloads at the same time
+     * @param crawlConcurrency int number of channels
+     */
+    public void setCrawlConcurrency(int crawlConcurrency) {
+        this.crawlConcurrency = crawlConcurrency;
+    }
+
+    /**
+     * Returns the number of requests per second a crawl may send to the API
+     * @return double requests per second, 0 or less for no limit
+     */
+    public double getCrawlRate() {
+        return crawlRate;
+    }
+
+    /**
+     * Sets the number of requests per second a crawl may send to the API
+     * @param crawlRate double requests per second, 0 or less for no limit
+     */
+    public void setCrawlRate(double crawlRate) {
+        this.crawlRate = crawlRate;
+    }
+
+    /**
+     * Returns the port of the embedded schedule server
+     * @return int port, 0 if the server is disabled
+     */
+    public int getServerPort() {
+        return serverPort;
+    }
+
+    /**
+     * Sets the port of the embedded schedule server
+     * @param serverPort int port, 0 to disable the server
+     */
+    public void setServerPort(int serverPort) {
+        this.serverPort = serverPort;
+    }
+
+    /**
+     * Returns the number of threads answering requests to the embedded schedule server
+     * @return int number of threads
+     */
+    public int getServerThreads() {
+        return serverThreads;
+    }
+
+    /**
+     * Sets the number of threads answering requests to the embedded schedule server
+     * @param serverThreads int number of threads
+     */
+    public void setServerThreads(int serverThreads) {
+        this.serverThreads = serverThreads;
+    }
+}
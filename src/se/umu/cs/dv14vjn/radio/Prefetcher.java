@@ -0,0 +1,181 @@
+package se.umu.cs.dv14vjn.radio;
+
+import se.umu.cs.dv14vjn.radio.channelinfo.Channel;
+import se.umu.cs.dv14vjn.radio.channelinfo.Channels;
+import se.umu.cs.dv14vjn.radio.storage.SelectionHistory;
+
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Set;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.ScheduledFuture;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.function.IntConsumer;
+import java.util.function.Supplier;
+
+/**
+ * Prefetcher warms the schedules of the channels the user is most likely to open next while the application is idle
+ * Channels are ranked by the selection history, channels that were never selected keep their menu order.
+ * Prefetching runs one channel at a time on a single low priority thread, and stops as soon as a foreground
+ * request starts, continuing once nothing has happened in the foreground for a while. Prefetched schedules are
+ * only held while their channels are predicted, so at most the configured number of them is kept in memory.
+ * @author Vincent Johansson
+ */
+public class Prefetcher {
+
+    private static final long IDLE_DELAY = 3000;
+
+    private final ScheduledExecutorService executor = Executors.newSingleThreadScheduledExecutor(r -> {
+        Thread thread = new DaemonThreadFactory("prefetch").newThread(r);
+        thread.setPriority(Thread.MIN_PRIORITY);
+        return thread;
+    });
+    private final SelectionHistory history;
+    private final int channelCount;
+    private final Supplier<Channels> channels;
+    private final IntConsumer warm;
+    private final IntConsumer release;
+    private final AtomicInteger foreground = new AtomicInteger();
+    private volatile long lastForeground;
+    private volatile int currentId = -1;
+    private ScheduledFuture<?> pending;
+
+    /**
+     * Initializes a new se.umu.cs.dv14vjn.radio.Prefetcher
+     * @param history SelectionHistory the predictions are made from
+     * @param channelCount int number of most likely channels to keep warm, 0 to disable prefetching
+     * @param channels Supplier of the latest channels
+     * @param warm IntConsumer downloading the schedule of the channel with an id without caching it
+     * @param release IntConsumer dropping the prefetched schedule of the channel with an id
+     */
+    public Prefetcher(SelectionHistory history, int channelCount, Supplier<Channels> channels, IntConsumer warm,
+                      IntConsumer release) {
+        this.history = history;
+        this.channelCount = channelCount;
+        this.channels = channels;
+        this.warm = warm;
+        this.release = release;
+    }
+
+    /**
+     * Record that the user selected a channel and plan a prefetch for the channels likely to follow it
+     * @param channel se.umu.cs.dv14vjn.radio.channelinfo.Channel object that was selected
+     */
+    public void selected(Channel channel) {
+        int previousId = currentId;
+        currentId = channel.getId();
+        foregroundActivity();
+        executor.execute(() -> history.record(previousId, channel.getId()));
+        schedulePass();
+    }
+
+    /**
+     * Mark the start of a foreground request, prefetching stops until it has finished
+     */
+    public void foregroundStarted() {
+        foreground.incrementAndGet();
+        foregroundActivity();
+    }
+
+    /**
+     * Mark the end of a foreground request
+     */
+    public void foregroundFinished() {
+        foreground.decrementAndGet();
+        foregroundActivity();
+        schedulePass();
+    }
+
+    /**
+     * Note activity in the foreground that does not need to be waited for, such as loading images
+     */
+    public void foregroundActivity() {
+        lastForeground = System.currentTimeMillis();
+    }
+
+    /**
+     * Returns whether the foreground has been quiet long enough for prefetching to go on
+     * @return true if no foreground request is running and none has been made for a while
+     */
+    public boolean isIdle() {
+        return foreground.get() == 0 && System.currentTimeMillis() - lastForeground >= IDLE_DELAY;
+    }
+
+    /**
+     * Plan a prefetch pass once the application has been idle for a while, replacing a pass already planned
+     */
+    public synchronized void schedulePass() {
+        if (channelCount <= 0) {
+            return;
+        }
+        if (pending != null) {
+            pending.cancel(false);
+        }
+        pending = executor.schedule(this::pass, IDLE_DELAY, TimeUnit.MILLISECONDS);
+    }
+
+    /**
+     * Stop prefetching
+     */
+    public void shutdown() {
+        executor.shutdownNow();
+    }
+
+    /**
+     * Returns the channels most likely to be selected next, most likely first
+     * @param channels Channels object with the current channels
+     * @return List of at most the configured number of channels, never the current channel
+     */
+    List<Channel> predict(Channels channels) {
+        int current = currentId;
+        List<Channel> candidates = new ArrayList<>();
+        for (String name : channels.getNames()) {
+            Channel channel = channels.getChannel(name);
+            if (channel.getId() != current) {
+                candidates.add(channel);
+            }
+        }
+
+        /* The sort is stable, so channels with equal scores stay in menu order */
+        candidates.sort(Comparator.comparingInt((Channel channel) -> history.score(channel.getId(), current))
+                .reversed());
+        return candidates.subList(0, Math.min(channelCount, candidates.size()));
+    }
+
+    /**
+     * Warm the predicted channels that are not cached yet and release the channels that are no longer predicted,
+     * yielding to the foreground between channels
+     */
+    private void pass() {
+        Channels current = channels.get();
+        List<Channel> predicted = predict(current);
+        for (Channel channel : predicted) {
+            if (!isIdle()) {
+                schedulePass();
+                return;
+            }
+            if (!channel.isCached()) {
+                try {
+                    warm.accept(channel.getId());
+                } catch (RuntimeException e) {
+                    e.printStackTrace();
+                }
+            }
+        }
+
+        /* The channel shown is left alone, it is about to be cached if it is not already */
+        Set<Integer> keep = new HashSet<>();
+        predicted.forEach(channel -> keep.add(channel.getId()));
+        keep.add(currentId);
+        for (String name : current.getNames()) {
+            Channel channel = current.getChannel(name);
+            if (!channel.isCached() && channel.getSchedule() != null && !keep.contains(channel.getId())) {
+                release.accept(channel.getId());
+            }
+        }
+    }
+}
@@ -0,0 +1,136 @@
+package se.umu.cs.dv14vjn.radio;
+
+import se.umu.cs.dv14vjn.radio.channelinfo.Channel;
+import se.umu.cs.dv14vjn.radio.channelinfo.Program;
+import se.umu.cs.dv14vjn.radio.channelinfo.Schedule;
+
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.*;
+import java.util.function.IntConsumer;
+import java.util.function.IntFunction;
+import java.util.function.ToLongFunction;
+
+/**
+ * RefreshScheduler keeps the cached schedules up to date by planning the next refresh of each channel on its own
+ * A channel is refreshed shortly after its next program starts, or when the server says its schedule expires
+ * if that is sooner, but no more often than every 5 minutes and at least once an hour. A random jitter spreads
+ * out channels that would otherwise be due at the same moment, and at most a configured number of refreshes
+ * run at the same time. Channels are planned by id and looked up when they are due, so the refresh always sees
+ * the latest published version of a channel.
+ * @author Vincent Johansson
+ */
+public class RefreshScheduler {
+
+    private static final long MIN_INTERVAL = 5 * 60 * 1000;
+    private static final long MAX_INTERVAL = 60 * 60 * 1000;
+    private static final long BOUNDARY_DELAY = 30 * 1000;
+    private static final long MAX_JITTER = 60 * 1000;
+
+    private final ScheduledExecutorService timer =
+            Executors.newSingleThreadScheduledExecutor(new DaemonThreadFactory("refresh-timer"));
+    private final ExecutorService workers;
+    private final Map<Integer, ScheduledFuture<?>> planned = new ConcurrentHashMap<>();
+    private final Set<Integer> running = ConcurrentHashMap.newKeySet();
+    private final IntConsumer refresher;
+    private final IntFunction<Channel> channels;
+    private final ToLongFunction<Channel> expiry;
+
+    /**
+     * Initializes a new se.umu.cs.dv14vjn.radio.RefreshScheduler
+     * @param concurrency int maximum number of channels refreshed at the same time
+     * @param refresher IntConsumer that refreshes the schedule of the channel with an id, called on a worker thread
+     * @param channels function returning the latest version of the channel with an id, null if it is gone
+     * @param expiry function returning when the server said the schedule of a channel expires, 0 if unknown
+     */
+    public RefreshScheduler(int concurrency, IntConsumer refresher, IntFunction<Channel> channels,
+                            ToLongFunction<Channel> expiry) {
+        this.workers = Executors.newFixedThreadPool(Math.max(1, concurrency), new DaemonThreadFactory("refresh"));
+        this.refresher = refresher;
+        this.channels = channels;
+        this.expiry = expiry;
+    }
+
+    /**
+     * Plan the next refresh of a channel from its schedule, replacing any refresh already planned
+     * @param channelId int id of a channel with a cached schedule
+     */
+    public void plan(int channelId) {
+        Channel channel = channels.apply(channelId);
+        if (channel == null) {
+            return;
+        }
+        long now = System.currentTimeMillis();
+        schedule(channelId, nextRefreshTime(channel, now) - now);
+    }
+
+    /**
+     * Refresh a channel as soon as a worker is free, the next refresh is planned when it is done
+     * @param channelId int id of a channel with a cached schedule
+     */
+    public void refreshNow(int channelId) {
+        schedule(channelId, 0);
+    }
+
+    /**
+     * Stop all planned and running refreshes
+     */
+    public void shutdown() {
+        timer.shutdownNow();
+        workers.shutdownNow();
+    }
+
+    /**
+     * Returns when a channel should be refreshed next
+     * @param channel se.umu.cs.dv14vjn.radio.channelinfo.Channel object
+     * @param now long current time in milliseconds since the epoch
+     * @return long time in milliseconds since the epoch
+     */
+    long nextRefreshTime(Channel channel, long now) {
+        long next = now + MAX_INTERVAL;
+
+        /* Late changes to the schedule are most likely around the start of a program */
+        Schedule schedule = channel.getSchedule();
+        if (schedule != null) {
+            Program upcoming = schedule.next(now);
+            if (upcoming != null) {
+                next = Math.min(next, upcoming.getStartTime() + BOUNDARY_DELAY);
+            }
+        }
+
+        long expires = expiry.applyAsLong(channel);
+        if (expires > 0) {
+            next = Math.min(next, expires);
+        }
+        next = Math.max(next, now + MIN_INTERVAL);
+        return next + ThreadLocalRandom.current().nextLong(MAX_JITTER);
+    }
+
+    /**
+     * Replace the planned refresh of a channel, compute keeps a refresh that plans its successor
+     * from overwriting it
+     */
+    private void schedule(int channelId, long delay) {
+        planned.compute(channelId, (id, previous) -> {
+            if (previous != null) {
+                previous.cancel(false);
+            }
+            return timer.schedule(() -> workers.execute(() -> refresh(channelId)), delay, TimeUnit.MILLISECONDS);
+        });
+    }
+
+    private void refresh(int channelId) {
+        /* A channel that is already being refreshed plans its next refresh when it is done */
+        if (!running.add(channelId)) {
+            return;
+        }
+        try {
+            refresher.accept(channelId);
+        } catch (RuntimeException e) {
+            e.printStackTrace();
+        } finally {
+            running.remove(channelId);
+        }
+        plan(channelId);
+    }
+}
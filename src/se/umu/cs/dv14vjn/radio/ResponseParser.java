@@ -0,0 +1,79 @@
+package se.umu.cs.dv14vjn.radio;
+
+import com.fasterxml.jackson.core.JsonParser;
+import com.fasterxml.jackson.core.JsonToken;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.fasterxml.jackson.databind.ObjectReader;
+import se.umu.cs.dv14vjn.radio.channelinfo.Channel;
+import se.umu.cs.dv14vjn.radio.channelinfo.Program;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.util.List;
+import java.util.function.Predicate;
+
+/**
+ * ResponseParser decodes API responses while streaming the tokens, without building a JsonNode tree
+ * @author Vincent Johansson
+ */
+public class ResponseParser {
+
+    private static final ObjectMapper MAPPER = new ObjectMapper();
+    private static final ObjectReader CHANNEL_READER = MAPPER.readerFor(Channel.class);
+    private static final ObjectReader PROGRAM_READER = MAPPER.readerFor(Program.class);
+
+    private ResponseParser() {
+    }
+
+    /**
+     * Read the channels array of a channels response
+     * @param in InputStream with the JSON response, closed when done
+     * @param filter Predicate deciding which channels to keep
+     * @param lst List the accepted channels are added to
+     */
+    public static void parseChannels(InputStream in, Predicate<Channel> filter, List<Channel> lst)
+            throws IOException {
+        readArray(in, "channels", CHANNEL_READER, filter, lst);
+    }
+
+    /**
+     * Read the schedule array of a scheduledepisodes response
+     * @param in InputStream with the JSON response, closed when done
+     * @param filter Predicate deciding which programs to keep
+     * @param lst List the accepted programs are added to
+     */
+    public static void parsePrograms(InputStream in, Predicate<Program> filter, List<Program> lst)
+            throws IOException {
+        readArray(in, "schedule", PROGRAM_READER, filter, lst);
+    }
+
+    /**
+     * Find a top level array field and bind each of its elements directly from the token stream
+     * @param in InputStream with the JSON response
+     * @param field String name of the array field
+     * @param reader ObjectReader for the element type
+     * @param filter Predicate deciding which elements to keep
+     * @param lst List the accepted elements are added to
+     */
+    private static <T> void readArray(InputStream in, String field, ObjectReader reader,
+                                      Predicate<T> filter, List<T> lst) throws IOException {
+        try (JsonParser parser = MAPPER.getFactory().createParser(in)) {
+            if (parser.nextToken() != JsonToken.START_OBJECT) {
+                throw new IOException("Expected a JSON object in response");
+            }
+            while (parser.nextToken() == JsonToken.FIELD_NAME) {
+                JsonToken value = parser.nextToken();
+                if (field.equals(parser.currentName()) && value == JsonToken.START_ARRAY) {
+                    while (parser.nextToken() == JsonToken.START_OBJECT) {
+                        T element = reader.readValue(parser);
+                        if (filter.test(element)) {
+                            lst.add(element);
+                        }
+                    }
+                } else {
+                    parser.skipChildren();
+                }
+            }
+        }
+    }
+}
@@ -0,0 +1,81 @@
+package se.umu.cs.dv14vjn.radio;
+
+import com.fasterxml.jackson.core.JsonFactory;
+import com.fasterxml.jackson.core.JsonGenerator;
+import se.umu.cs.dv14vjn.radio.channelinfo.Channel;
+import se.umu.cs.dv14vjn.radio.channelinfo.Program;
+import se.umu.cs.dv14vjn.radio.channelinfo.Schedule;
+
+import java.io.IOException;
+import java.time.Instant;
+
+/**
+ * ScheduleJson writes channels and programs as JSON with a streaming generator
+ * It is the counterpart of ResponseParser for everything this application serves or dumps itself, so that
+ * every output uses the same field names. Times are written as ISO-8601 instants in UTC, an end time that is not
+ * known is written as null.
+ * @author Vincent Johansson
+ */
+public class ScheduleJson {
+
+    /**
+     * Factory for the generators, thread safe and shared
+     */
+    public static final JsonFactory FACTORY = new JsonFactory();
+
+    private ScheduleJson() {
+    }
+
+    /**
+     * Write the fields describing a channel into the object currently being written
+     * @param generator JsonGenerator positioned inside an object
+     * @param channel se.umu.cs.dv14vjn.radio.channelinfo.Channel object
+     */
+    public static void writeChannelFields(JsonGenerator generator, Channel channel) throws IOException {
+        generator.writeNumberField("id", channel.getId());
+        generator.writeStringField("name", channel.getName());
+        generator.writeStringField("channeltype", channel.getChanneltype());
+        generator.writeStringField("image", channel.getImage());
+    }
+
+    /**
+     * Write the program at an index of a schedule as an object
+     * The end time is the one the schedule derives, so a program without one ends when the next program starts
+     * @param generator JsonGenerator positioned where a value is expected
+     * @param schedule se.umu.cs.dv14vjn.radio.channelinfo.Schedule the program belongs to
+     * @param index int index of the program in the schedule
+     */
+    public static void writeProgram(JsonGenerator generator, Schedule schedule, int index) throws IOException {
+        Program program = schedule.getSchedule()[index];
+        long end = schedule.getEndTime(index);
+        generator.writeStartObject();
+        generator.writeStringField("title", program.getTitle());
+        generator.writeStringField("description", program.getDescription());
+        generator.writeStringField("starttimeutc", Instant.ofEpochMilli(program.getStartTime()).toString());
+        if (end > 0 && end != Long.MAX_VALUE) {
+            generator.writeStringField("endtimeutc", Instant.ofEpochMilli(end).toString());
+        } else {
+            generator.writeNullField("endtimeutc");
+        }
+        generator.writeStringField("imageurl", program.getImageurl());
+        generator.writeEndObject();
+    }
+
+    /**
+     * Write a channel and its programs as one object
+     * @param generator JsonGenerator positioned where a value is expected
+     * @param channel se.umu.cs.dv14vjn.radio.channelinfo.Channel object
+     * @param schedule se.umu.cs.dv14vjn.radio.channelinfo.Schedule with the programs to write
+     */
+    public static void writeSchedule(JsonGenerator generator, Channel channel, Schedule schedule)
+            throws IOException {
+        generator.writeStartObject();
+        writeChannelFields(generator, channel);
+        generator.writeArrayFieldStart("programs");
+        for (int i = 0; i < schedule.getSchedule().length; i++) {
+            writeProgram(generator, schedule, i);
+        }
+        generator.writeEndArray();
+        generator.writeEndObject();
+    }
+}
@@ -0,0 +1,65 @@
+package se.umu.cs.dv14vjn.radio;
+
+import java.util.Map;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.function.Supplier;
+
+/**
+ * SingleFlight coalesces concurrent calls for the same key
+ * The first caller runs the call, callers arriving while it is in flight wait for and share its result
+ * instead of running it again. Once the call has finished the next caller runs it anew.
+ * @param <K> type of the keys
+ * @param <V> type of the results
+ * @author Vincent Johansson
+ */
+public class SingleFlight<K, V> {
+
+    private final Map<K, CompletableFuture<V>> inFlight = new ConcurrentHashMap<>();
+    private final AtomicLong started = new AtomicLong();
+    private final AtomicLong deduplicated = new AtomicLong();
+
+    /**
+     * Run a call on the calling thread, or wait for the call already in flight for the key
+     * @param key K key identifying the call
+     * @param call Supplier running the call
+     * @return V result of the call
+     * @throws java.util.concurrent.CompletionException wrapping the exception of a shared call that failed
+     */
+    public V execute(K key, Supplier<V> call) {
+        CompletableFuture<V> created = new CompletableFuture<>();
+        CompletableFuture<V> existing = inFlight.putIfAbsent(key, created);
+        if (existing != null) {
+            deduplicated.incrementAndGet();
+            return existing.join();
+        }
+        started.incrementAndGet();
+        try {
+            V result = call.get();
+            created.complete(result);
+            return result;
+        } catch (RuntimeException e) {
+            created.completeExceptionally(e);
+            throw e;
+        } finally {
+            inFlight.remove(key, created);
+        }
+    }
+
+    /**
+     * Returns the number of calls that were run
+     * @return long number of calls
+     */
+    public long getStartedCount() {
+        return started.get();
+    }
+
+    /**
+     * Returns the number of callers that shared a call in flight instead of running their own
+     * @return long number of deduplicated calls
+     */
+    public long getDeduplicatedCount() {
+        return deduplicated.get();
+    }
+}
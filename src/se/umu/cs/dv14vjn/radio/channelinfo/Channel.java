@@ -1,60 +1,77 @@
 package se.umu.cs.dv14vjn.radio.channelinfo;
 
+import com.fasterxml.jackson.annotation.JsonCreator;
 import com.fasterxml.jackson.annotation.JsonIgnoreProperties;
+import com.fasterxml.jackson.annotation.JsonProperty;
 
 /**
  * Channel object that stores information about a channel
+ * Channels are immutable, a changed schedule is published as a new Channel through Channels
  * @author Vincent Johansson
  */
 @JsonIgnoreProperties({"imagetemplate", "color", "tagline", "liveaudio", "xmltvid", "siteurl"})
 public class Channel {
-    private String name;
-    private String image;
-    private String siteurl;
-    private String scheduleurl;
-    private String channeltype;
-    private Schedule schedule;
-    private int id;
-    private boolean cached = false;
 
-    /**
-     * Returns the name of the channel
-     * @return String with name of channel
-     */
-    public String getName() {
-        return name;
-    }
+    private static final String FORMAT_SUFFIX = "&format=json";
+
+    private final int id;
+    private final String name;
+    private final String image;
+    private final String channeltype;
+    private final String scheduleurl;
+    private final ScheduleDays days;
+    private final Schedule schedule;
+    private final boolean cached;
 
     /**
-     * Sets the name of the channel
+     * Initializes a new se.umu.cs.dv14vjn.radio.channelinfo.Channel without a schedule
+     * @param id int with channel id
      * @param name String with name of channel
+     * @param image String with image url
+     * @param channeltype String with type of channel
+     * @param scheduleurl String with schedule url, including the format parameter
      */
-    public void setName(String name) {
+    public Channel(int id, String name, String image, String channeltype, String scheduleurl) {
+        this(id, name, image, channeltype, scheduleurl, ScheduleDays.EMPTY, null, false);
+    }
+
+    private Channel(int id, String name, String image, String channeltype, String scheduleurl,
+                    ScheduleDays days, Schedule schedule, boolean cached) {
+        this.id = id;
         this.name = name;
+        this.image = image;
+        this.channeltype = channeltype;
+        this.scheduleurl = scheduleurl;
+        this.days = days;
+        this.schedule = schedule;
+        this.cached = cached;
     }
 
     /**
-     * Returns the channel id
-     * @return int with channel id
+     * Create a channel from the JSON data of the API, the format parameter is added to the schedule url
+     * @return Channel object
      */
-    public int getId() {
-        return id;
+    @JsonCreator
+    static Channel fromJson(@JsonProperty("id") int id, @JsonProperty("name") String name,
+                            @JsonProperty("image") String image, @JsonProperty("channeltype") String channeltype,
+                            @JsonProperty("scheduleurl") String scheduleurl) {
+        return new Channel(id, name, image, channeltype, scheduleurl != null ? scheduleurl + FORMAT_SUFFIX : null);
     }
 
     /**
-     * Sets the channel id
-     * @param id int with channel id
+     * Returns the name of the channel
+     * @return String with name of channel
      */
-    public void setId(int id) {
-        this.id = id;
+    public String getName() {
+        return name;
     }
 
     /**
-     * Sets the image url
-     * @param image String with image url
+     * Returns the channel id
+     * @return int with channel id
      */
-    public void setImage(String image) {
-        this.image = image;
+    public int getId() {
+        return id;
     }
 
     /**
@@ -65,14 +82,6 @@ public class Channel {
         return image;
     }
 
-    /**
-     * Sets the type of channel
-     * @param channeltype String with type of channel
-     */
-    public void setChanneltype(String channeltype) {
-        this.channeltype = channeltype;
-    }
-
     /**
      * Returns the type of channel
      * @return String with type of channel
@@ -81,14 +90,6 @@ public class Channel {
         return channeltype;
     }
 
-    /**
-     * Sets the schedule url
-     * @param scheduleurl String with schedule url
-     */
-    public void setScheduleurl(String scheduleurl) {
-        this.scheduleurl = scheduleurl + "&format=json";
-    }
-
     /**
      * Returns the schedule url
      * @return String with schedule url
@@ -97,27 +98,20 @@ public class Channel {
         return scheduleurl;
     }
 
-    /**
-     * Sets the schedule
-     * @param schedule Schedule object
-     */
-    public void setSchedule(Schedule schedule) {
-        this.schedule = schedule;
-    }
-
     /**
      * Returns the schedule
-     * @return Schedule object
+     * @return Schedule object, null if it has not been fetched
      */
     public Schedule getSchedule() {
         return schedule;
     }
 
     /**
-     * Mark the channel as cached
+     * Returns the downloaded days the schedule is cut from
+     * @return ScheduleDays object
      */
-    public void setCached() {
-        cached = true;
+    public ScheduleDays getDays() {
+        return days;
     }
 
     /**
@@ -127,4 +121,22 @@ public class Channel {
     public boolean isCached() {
         return cached;
     }
+
+    /**
+     * Returns a copy of the channel with new days and the schedule cut from them
+     * @param days ScheduleDays object
+     * @param schedule Schedule object
+     * @return Channel object
+     */
+    public Channel withSchedule(ScheduleDays days, Schedule schedule) {
+        return new Channel(id, name, image, channeltype, scheduleurl, days, schedule, cached);
+    }
+
+    /**
+     * Returns a copy of the channel marked as cached
+     * @return Channel object
+     */
+    public Channel asCached() {
+        return new Channel(id, name, image, channeltype, scheduleurl, days, schedule, true);
+    }
 }
@@ -1,40 +1,123 @@
 package se.umu.cs.dv14vjn.radio.channelinfo;
 
-import com.fasterxml.jackson.annotation.JsonIgnoreProperties;
-
 import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
 
 /**
- * Channels object that stores channel objects in an array
+ * Channels object that stores channel objects in menu order
+ * Channels are indexed by name and by id, the id index is an open addressing table over primitive ints.
+ * Channels is immutable, changes return a new object that shares the unchanged channels.
  * @author Vincent Johansson
  */
-@JsonIgnoreProperties({"copyright"})
 public class Channels {
 
-    private final HashMap<String, Channel> channelsMap = new HashMap<>();
-    private String[] channels;
-
     /**
-     * Returns the channels array
-     * @return Channel array
+     * Channels without any channels
      */
-    public String[] getNames() {
-        return channels;
-    }
+    public static final Channels EMPTY = new Channels(List.of());
+
+    private final Channel[] channels;
+    private final String[] names;
+    private final Map<String, Channel> channelsMap;
+    private final int[] idKeys;
+    private final Channel[] idValues;
 
     /**
-     * Sets the channels array
-     * @param channels Channel array
+     * Initializes a new se.umu.cs.dv14vjn.radio.channelinfo.Channels
+     * @param channels List of channels in menu order
      */
-    public void setNamesArray(String[] channels) {
+    public Channels(List<Channel> channels) {
+        this(channels.toArray(Channel[]::new));
+    }
+
+    private Channels(Channel[] channels) {
         this.channels = channels;
+        names = new String[channels.length];
+        channelsMap = new HashMap<>(channels.length * 2);
+
+        /* Keep the table at most half full so that probe sequences stay short */
+        int capacity = Integer.highestOneBit(Math.max(1, channels.length) * 2) * 2;
+        idKeys = new int[capacity];
+        idValues = new Channel[capacity];
+        for (int i = 0; i < channels.length; i++) {
+            names[i] = channels[i].getName();
+            channelsMap.put(channels[i].getName(), channels[i]);
+            int slot = slot(channels[i].getId());
+            idKeys[slot] = channels[i].getId();
+            idValues[slot] = channels[i];
+        }
     }
 
-    public void addChannel(String name, Channel channel) {
-        channelsMap.put(name, channel);
+    /**
+     * Returns the names of the channels
+     * @return String array in menu order, shared and must not be modified
+     */
+    public String[] getNames() {
+        return names;
     }
 
+    /**
+     * Returns the channel with a name
+     * @param name String with name of channel
+     * @return Channel object, null if there is no such channel
+     */
     public Channel getChannel(String name) {
         return channelsMap.get(name);
     }
+
+    /**
+     * Returns the channel with an id
+     * @param id int with channel id
+     * @return Channel object, null if there is no such channel
+     */
+    public Channel getChannel(int id) {
+        return idValues[slot(id)];
+    }
+
+    /**
+     * Returns a copy where the channel with the same id is replaced
+     * @param channel Channel object
+     * @return Channels object, this object if there is no channel with the id
+     */
+    public Channels with(Channel channel) {
+        for (int i = 0; i < channels.length; i++) {
+            if (channels[i].getId() == channel.getId()) {
+                Channel[] copy = channels.clone();
+                copy[i] = channel;
+                return new Channels(copy);
+            }
+        }
+        return this;
+    }
+
+    /**
+     * Returns the channels of a newer channel list, keeping this object's version of the channels both contain
+     * @param fresh Channels object with the newer channel list
+     * @return Channels object in the order of the newer list
+     */
+    public Channels merge(Channels fresh) {
+        Channel[] merged = fresh.channels.clone();
+        for (int i = 0; i < merged.length; i++) {
+            Channel known = getChannel(merged[i].getId());
+            if (known != null) {
+                merged[i] = known;
+            }
+        }
+        return new Channels(merged);
+    }
+
+    /**
+     * Returns the slot of an id in the id index, either the slot holding it or the empty slot where it belongs
+     * @param id int with channel id
+     * @return int index into the id index arrays
+     */
+    private int slot(int id) {
+        int mask = idKeys.length - 1;
+        int slot = (id * 0x9E3779B9) >>> 16 & mask;
+        while (idValues[slot] != null && idKeys[slot] != id) {
+            slot = (slot + 1) & mask;
+        }
+        return slot;
+    }
 }
@@ -0,0 +1,32 @@
+package se.umu.cs.dv14vjn.radio.channelinfo;
+
+import com.fasterxml.jackson.core.JsonParser;
+import com.fasterxml.jackson.core.JsonToken;
+import com.fasterxml.jackson.databind.DeserializationContext;
+import com.fasterxml.jackson.databind.deser.std.StdDeserializer;
+
+import java.io.IOException;
+
+/**
+ * Deserializer for text that repeats between programs, such as titles and descriptions
+ * The text is looked up in the shared StringPool straight from the parser's character buffer, so text that is
+ * already pooled does not create a String at all
+ * @author Vincent Johansson
+ */
+public class InternedStringDeserializer extends StdDeserializer<String> {
+
+    /**
+     * Initializes a new se.umu.cs.dv14vjn.radio.channelinfo.InternedStringDeserializer
+     */
+    public InternedStringDeserializer() {
+        super(String.class);
+    }
+
+    @Override
+    public String deserialize(JsonParser parser, DeserializationContext context) throws IOException {
+        if (parser.currentToken() != JsonToken.VALUE_STRING) {
+            return StringPool.SHARED.intern(parser.getValueAsString());
+        }
+        return StringPool.SHARED.intern(parser.getTextCharacters(), parser.getTextOffset(), parser.getTextLength());
+    }
+}
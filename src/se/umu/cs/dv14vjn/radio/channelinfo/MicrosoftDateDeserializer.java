@@ -0,0 +1,55 @@
+package se.umu.cs.dv14vjn.radio.channelinfo;
+
+import com.fasterxml.jackson.core.JsonParser;
+import com.fasterxml.jackson.core.JsonToken;
+import com.fasterxml.jackson.databind.DeserializationContext;
+import com.fasterxml.jackson.databind.deser.std.StdDeserializer;
+
+import java.io.IOException;
+
+/**
+ * Deserializer for the Microsoft style dates used by the API, "/Date(1678575600000)/"
+ * The milliseconds are read straight from the parser's character buffer, without creating a String
+ * @author Vincent Johansson
+ */
+public class MicrosoftDateDeserializer extends StdDeserializer<Long> {
+
+    /**
+     * Initializes a new se.umu.cs.dv14vjn.radio.channelinfo.MicrosoftDateDeserializer
+     */
+    public MicrosoftDateDeserializer() {
+        super(Long.class);
+    }
+
+    @Override
+    public Long deserialize(JsonParser parser, DeserializationContext context) throws IOException {
+        if (parser.currentToken() == JsonToken.VALUE_NUMBER_INT) {
+            return parser.getLongValue();
+        }
+        if (parser.currentToken() != JsonToken.VALUE_STRING) {
+            return (Long) context.handleUnexpectedToken(Long.class, parser);
+        }
+
+        /* Skip to the first digit and read until the first character that is not one */
+        char[] text = parser.getTextCharacters();
+        int position = parser.getTextOffset();
+        int end = position + parser.getTextLength();
+        while (position < end && (text[position] < '0' || text[position] > '9')) {
+            position++;
+        }
+        if (position == end) {
+            return (Long) context.handleWeirdStringValue(Long.class, parser.getText(), "no milliseconds in date");
+        }
+        long millis = 0;
+        while (position < end && text[position] >= '0' && text[position] <= '9') {
+            millis = millis * 10 + (text[position] - '0');
+            position++;
+        }
+        return millis;
+    }
+
+    @Override
+    public Long getNullValue(DeserializationContext context) {
+        return 0L;
+    }
+}
@@ -1,30 +1,34 @@
 package se.umu.cs.dv14vjn.radio.channelinfo;
 
 import com.fasterxml.jackson.annotation.JsonIgnoreProperties;
+import com.fasterxml.jackson.databind.annotation.JsonDeserialize;
 
-import javax.imageio.ImageIO;
-import java.awt.*;
-import java.io.IOException;
-import java.net.URL;
 import java.time.Instant;
-import java.time.LocalDateTime;
 import java.time.ZoneId;
 import java.time.format.DateTimeFormatter;
-import java.util.regex.Matcher;
-import java.util.regex.Pattern;
 
 /**
  * Program object that stores information about a program
+ * Titles, descriptions and image URLs are interned in the shared StringPool as they are deserialized, so that
+ * programs repeated across days, refreshes and channels share their text
  * @author Vincent Johansson
  */
-@JsonIgnoreProperties({"episodeid", "program", "channel", "imageurltemplate", "photographer", "endtimeutc"})
+@JsonIgnoreProperties({"episodeid", "program", "channel", "imageurltemplate", "photographer"})
 public class Program {
 
+    private static final DateTimeFormatter LOCAL_TIME_FORMATTER =
+            DateTimeFormatter.ofPattern("dd/MM/yy HH:mm:ss").withZone(ZoneId.systemDefault());
+
+    @JsonDeserialize(using = InternedStringDeserializer.class)
     private String title;
+    @JsonDeserialize(using = InternedStringDeserializer.class)
     private String description;
-    private String starttimeutc;
+    @JsonDeserialize(using = MicrosoftDateDeserializer.class)
+    private long starttimeutc;
+    @JsonDeserialize(using = MicrosoftDateDeserializer.class)
+    private long endtimeutc;
+    @JsonDeserialize(using = InternedStringDeserializer.class)
     private String imageurl;
-    private Image image;
 
     /**
      * Returns the title of the program
@@ -47,7 +51,7 @@ public class Program {
      * @param subtitle String with subtitle of program
      */
     public void setSubtitle(String subtitle) {
-        this.title = title + subtitle;
+        this.title = StringPool.SHARED.intern(title + subtitle);
     }
 
     /**
@@ -68,19 +72,36 @@ public class Program {
 
     /**
      * Sets the start time of the program
+     * @param starttimeutc long with start time of program in milliseconds since the epoch
      */
-    public void setStarttimeutc(String starttimeutc) {
+    public void setStarttimeutc(long starttimeutc) {
         this.starttimeutc = starttimeutc;
     }
 
     /**
      * Returns the start time of the program
-     * @return String with start time of program in Unix time format
+     * @return long with start time of program in milliseconds since the epoch, 0 if it is missing
      */
-    public String getStarttimeutc() {
+    public long getStartTime() {
         return starttimeutc;
     }
 
+    /**
+     * Sets the end time of the program
+     * @param endtimeutc long with end time of program in milliseconds since the epoch
+     */
+    public void setEndtimeutc(long endtimeutc) {
+        this.endtimeutc = endtimeutc;
+    }
+
+    /**
+     * Returns the end time of the program
+     * @return long with end time of program in milliseconds since the epoch, 0 if it is missing
+     */
+    public long getEndTime() {
+        return endtimeutc;
+    }
+
     /**
      * Sets the image url for the program
      * @param imageurl String with image url of program
@@ -97,36 +118,11 @@ public class Program {
         return imageurl;
     }
 
-    public void setImage() throws IOException {
-        if (getImageurl() != null) {
-            Image tempImage = ImageIO.read(new URL(getImageurl()));
-            this.image = tempImage.getScaledInstance(60, 40, Image.SCALE_SMOOTH);
-        } else {
-            Image tempImage = ImageIO.read(
-                    new URL("https://static-cdn.sr.se/images/content/default-list-image.png"));
-            this.image = tempImage.getScaledInstance(60, 50, Image.SCALE_SMOOTH);
-        }
-    }
-
-    public Image getImage() {
-        return image;
-    }
-
     /**
      * Returns the start time of the program in local time
      * @return String with start time of program in local time
      */
-    public String getLocalTime(String time) {
-        DateTimeFormatter formatter = DateTimeFormatter.ofPattern("dd/MM/yy HH:mm:ss");
-        Matcher matcher = Pattern.compile("(\\d+)").matcher(time);
-        long timestamp;
-        String formattedTime = "";
-        if (matcher.find()) {
-            timestamp = Long.parseLong(matcher.group());
-            Instant instant = Instant.ofEpochMilli(timestamp);
-            LocalDateTime localDateTime = LocalDateTime.ofInstant(instant, ZoneId.systemDefault());
-            formattedTime = localDateTime.format(formatter);
-        }
-        return formattedTime;
+    public String getLocalTime() {
+        return LOCAL_TIME_FORMATTER.format(Instant.ofEpochMilli(starttimeutc));
     }
 }
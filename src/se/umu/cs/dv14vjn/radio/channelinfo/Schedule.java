@@ -1,28 +1,144 @@
 package se.umu.cs.dv14vjn.radio.channelinfo;
 
-import com.fasterxml.jackson.annotation.JsonIgnoreProperties;
+import java.util.Arrays;
+import java.util.Comparator;
+import java.util.List;
 
 /**
  * Schedule object that stores program objects in an array
+ * The programs are kept in start time order next to primitive arrays of their start and end times,
+ * so that time queries are answered with a binary search
+ * Schedules are immutable, so they can be read from any thread without locking
  */
-@JsonIgnoreProperties({"copyright"})
 public class Schedule {
 
-    private Program[] schedule;
+    private final Program[] schedule;
+    private final long[] starts;
+    private final long[] ends;
+
+    /**
+     * Initializes a new se.umu.cs.dv14vjn.radio.channelinfo.Schedule and builds the time index
+     * @param schedule Program array, copied before it is sorted
+     */
+    public Schedule(Program[] schedule) {
+        Program[] sorted = schedule.clone();
+        Arrays.sort(sorted, Comparator.comparingLong(Program::getStartTime));
+
+        long[] starts = new long[sorted.length];
+        long[] ends = new long[sorted.length];
+        for (int i = 0; i < sorted.length; i++) {
+            starts[i] = sorted[i].getStartTime();
+        }
+
+        /* Programs without an end time are taken to last until the next one starts */
+        for (int i = 0; i < sorted.length; i++) {
+            long end = sorted[i].getEndTime();
+            if (end == 0) {
+                end = i + 1 < sorted.length ? starts[i + 1] : Long.MAX_VALUE;
+            }
+            ends[i] = end;
+        }
+
+        this.schedule = sorted;
+        this.starts = starts;
+        this.ends = ends;
+    }
 
     /**
      * Returns the programs array
-     * @return Program array
+     * @return Program array in start time order, shared and must not be modified
      */
     public Program[] getSchedule() {
         return schedule;
     }
 
     /**
-     * Sets the programs array
-     * @param schedule Program array
+     * Returns the program that is on at the given time
+     * @param time long milliseconds since the epoch
+     * @return Program, null if nothing is on
+     */
+    public Program nowPlaying(long time) {
+        int index = lastStartingAtOrBefore(time);
+        return index >= 0 && time < ends[index] ? schedule[index] : null;
+    }
+
+    /**
+     * Returns the first program starting after the given time
+     * @param time long milliseconds since the epoch
+     * @return Program, null if no later program is known
+     */
+    public Program next(long time) {
+        int index = lastStartingAtOrBefore(time) + 1;
+        return index < schedule.length ? schedule[index] : null;
+    }
+
+    /**
+     * Returns the programs that are on at some point between two times
+     * @param from long start of the range in milliseconds since the epoch, inclusive
+     * @param to long end of the range in milliseconds since the epoch, exclusive
+     * @return List view of the programs array, no programs are copied
+     */
+    public List<Program> range(long from, long to) {
+        int start = rangeStart(from);
+        return Arrays.asList(schedule).subList(start, Math.max(start, rangeEnd(to)));
+    }
+
+    /**
+     * Returns the index of the first program that has not ended at the given time
+     * @param from long milliseconds since the epoch
+     * @return int index into the programs array
+     */
+    public int rangeStart(long from) {
+        int index = lastStartingAtOrBefore(from);
+        if (index < 0) {
+            return 0;
+        }
+        return from < ends[index] ? index : index + 1;
+    }
+
+    /**
+     * Returns the index after the last program starting before the given time
+     * @param to long milliseconds since the epoch
+     * @return int index into the programs array, exclusive
+     */
+    public int rangeEnd(long to) {
+        return lastStartingAtOrBefore(to - 1) + 1;
+    }
+
+    /**
+     * Returns the start time of the program at an index
+     * @param index int index into the programs array
+     * @return long milliseconds since the epoch
+     */
+    public long getStartTime(int index) {
+        return starts[index];
+    }
+
+    /**
+     * Returns the end time of the program at an index
+     * @param index int index into the programs array
+     * @return long milliseconds since the epoch
+     */
+    public long getEndTime(int index) {
+        return ends[index];
+    }
+
+    /**
+     * Binary search for the last program starting at or before a time
+     * @param time long milliseconds since the epoch
+     * @return int index, -1 if every program starts later
      */
-    public void setSchedule(Program[] schedule) {
-        this.schedule = schedule;
+    private int lastStartingAtOrBefore(long time) {
+        int low = 0;
+        int high = starts.length - 1;
+        while (low <= high) {
+            int mid = (low + high) >>> 1;
+            if (starts[mid] <= time) {
+                low = mid + 1;
+            } else {
+                high = mid - 1;
+            }
+        }
+        return high;
     }
 }
@@ -0,0 +1,103 @@
+package se.umu.cs.dv14vjn.radio.channelinfo;
+
+import java.time.LocalDate;
+import java.util.*;
+
+/**
+ * ScheduleDays stores the complete schedule of each downloaded day of a channel
+ * The schedule shown for a time window is cut from the stored days, so moving the window only requires
+ * downloading the days that enter it. ScheduleDays is immutable, changes return a new object.
+ * @author Vincent Johansson
+ */
+public class ScheduleDays {
+
+    /**
+     * ScheduleDays without any days
+     */
+    public static final ScheduleDays EMPTY = new ScheduleDays(new TreeMap<>());
+
+    private final NavigableMap<LocalDate, Program[]> days;
+
+    private ScheduleDays(NavigableMap<LocalDate, Program[]> days) {
+        this.days = days;
+    }
+
+    /**
+     * Returns the programs of a day
+     * @param date LocalDate of the day
+     * @return Program array, null if the day is not stored
+     */
+    public Program[] getDay(LocalDate date) {
+        return days.get(date);
+    }
+
+    /**
+     * Returns a copy storing the programs of a day, replacing the previous ones
+     * @param date LocalDate of the day
+     * @param programs Program array with every program of the day
+     * @return ScheduleDays object
+     */
+    public ScheduleDays withDay(LocalDate date, Program[] programs) {
+        NavigableMap<LocalDate, Program[]> copy = new TreeMap<>(days);
+        copy.put(date, programs);
+        return new ScheduleDays(copy);
+    }
+
+    /**
+     * Check if a day is stored
+     * @param date LocalDate of the day
+     * @return true if stored, false if not
+     */
+    public boolean contains(LocalDate date) {
+        return days.containsKey(date);
+    }
+
+    /**
+     * Returns the stored days
+     * @return List of dates in day order
+     */
+    public List<LocalDate> getDates() {
+        return List.copyOf(days.keySet());
+    }
+
+    /**
+     * Returns a copy without the days outside a range
+     * @param first LocalDate of the first day to keep
+     * @param last LocalDate of the last day to keep
+     * @return ScheduleDays object, this object if no day is outside the range
+     */
+    public ScheduleDays retain(LocalDate first, LocalDate last) {
+        if (days.isEmpty() || (!days.firstKey().isBefore(first) && !days.lastKey().isAfter(last))) {
+            return this;
+        }
+        return new ScheduleDays(new TreeMap<>(days.subMap(first, true, last, true)));
+    }
+
+    /**
+     * Build the schedule of the programs starting inside a time window
+     * Programs listed on both sides of midnight are only included once
+     * @param from long start of the window in milliseconds since the epoch, inclusive
+     * @param to long end of the window in milliseconds since the epoch, inclusive
+     * @return Schedule object
+     */
+    public Schedule window(long from, long to) {
+        List<Program> programs = new ArrayList<>();
+        for (Program[] day : days.values()) {
+            for (Program program : day) {
+                if (program.getStartTime() >= from && program.getStartTime() <= to) {
+                    programs.add(program);
+                }
+            }
+        }
+        programs.sort(Comparator.comparingLong(Program::getStartTime));
+        for (int i = programs.size() - 1; i > 0; i--) {
+            Program program = programs.get(i);
+            Program previous = programs.get(i - 1);
+            if (program.getStartTime() == previous.getStartTime()
+                    && Objects.equals(program.getTitle(), previous.getTitle())) {
+                programs.remove(i);
+            }
+        }
+        return new Schedule(programs.toArray(Program[]::new));
+    }
+}
@@ -0,0 +1,96 @@
+package se.umu.cs.dv14vjn.radio.channelinfo;
+
+import java.util.Arrays;
+
+/**
+ * StringPool is a bounded interning dictionary for text that repeats across days, refreshes and channels
+ * Each string hashes to one slot of a fixed table, a string found in its slot is returned instead of a new copy
+ * and a string that is not replaces whatever was there. The pool never grows, a collision only means that one
+ * of the strings is not shared. Slots are read and written without locking, which is safe since strings are
+ * immutable, at worst a concurrent miss stores a string twice.
+ * @author Vincent Johansson
+ */
+public class StringPool {
+
+    /**
+     * Pool shared by everything that deserializes programs
+     */
+    public static final StringPool SHARED = new StringPool(1 << 15);
+
+    private final String[] slots;
+    private final int mask;
+
+    /**
+     * Initializes a new se.umu.cs.dv14vjn.radio.channelinfo.StringPool
+     * @param capacity int number of slots, rounded up to a power of two
+     */
+    public StringPool(int capacity) {
+        int size = Integer.highestOneBit(Math.max(1, capacity - 1)) << 1;
+        slots = new String[size];
+        mask = size - 1;
+    }
+
+    /**
+     * Returns the pooled string equal to a string, pooling it if there is none
+     * @param string String to intern, may be null
+     * @return String equal to the argument, null if it was null
+     */
+    public String intern(String string) {
+        if (string == null) {
+            return null;
+        }
+        int slot = spread(string.hashCode()) & mask;
+        String pooled = slots[slot];
+        if (string.equals(pooled)) {
+            return pooled;
+        }
+        slots[slot] = string;
+        return string;
+    }
+
+    /**
+     * Returns the pooled string equal to a range of characters, only creating a String if there is none
+     * @param text char array holding the characters
+     * @param offset int index of the first character
+     * @param length int number of characters
+     * @return String equal to the characters
+     */
+    public String intern(char[] text, int offset, int length) {
+        /* The same hash as String.hashCode(), so both methods use the same slot for the same text */
+        int hash = 0;
+        for (int i = offset; i < offset + length; i++) {
+            hash = 31 * hash + text[i];
+        }
+        int slot = spread(hash) & mask;
+        String pooled = slots[slot];
+        if (pooled != null && matches(pooled, text, offset, length)) {
+            return pooled;
+        }
+        String string = new String(text, offset, length);
+        slots[slot] = string;
+        return string;
+    }
+
+    /**
+     * Empties every slot, strings already handed out stay valid but are no longer shared with new ones
+     */
+    public void clear() {
+        Arrays.fill(slots, null);
+    }
+
+    private static boolean matches(String pooled, char[] text, int offset, int length) {
+        if (pooled.length() != length) {
+            return false;
+        }
+        for (int i = 0; i < length; i++) {
+            if (pooled.charAt(i) != text[offset + i]) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    private static int spread(int hash) {
+        return hash ^ (hash >>> 16);
+    }
+}
@@ -0,0 +1,57 @@
+package se.umu.cs.dv14vjn.radio.crawl;
+
+import se.umu.cs.dv14vjn.radio.Configuration;
+import se.umu.cs.dv14vjn.radio.net.HttpClientTransport;
+
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.OutputStream;
+
+/**
+ * Command line entry point that crawls every channel's schedule and writes it as JSON Lines
+ * Usage: Crawl [--out file] [--concurrency channels] [--rate requests-per-second]
+ * The schedules are written to standard output unless a file is given, the statistics go to standard error.
+ * Everything else is configured with the same system properties as the application.
+ * @author Vincent Johansson
+ */
+public class Crawl {
+
+    public static void main(String[] args) {
+        /* Never touch a display, even where one happens to be available */
+        System.setProperty("java.awt.headless", "true");
+
+        Configuration configuration = Configuration.fromSystemProperties();
+        String out = null;
+        try {
+            for (int i = 0; i < args.length; i++) {
+                switch (args[i]) {
+                    case "--out" -> out = args[++i];
+                    case "--concurrency" -> configuration.setCrawlConcurrency(Integer.parseInt(args[++i]));
+                    case "--rate" -> configuration.setCrawlRate(Double.parseDouble(args[++i]));
+                    default -> throw new IllegalArgumentException("Unknown option " + args[i]);
+                }
+            }
+        } catch (IllegalArgumentException | ArrayIndexOutOfBoundsException e) {
+            System.err.println("Usage: Crawl [--out file] [--concurrency channels] [--rate requests-per-second]");
+            System.exit(2);
+        }
+
+        HttpClientTransport transport = new HttpClientTransport();
+        Crawler crawler = new Crawler(configuration, transport);
+        try (transport; OutputStream stream = out != null ? new FileOutputStream(out) : System.out;
+             JsonLinesWriter writer = new JsonLinesWriter(stream)) {
+            crawler.crawl(writer);
+        } catch (IOException e) {
+            System.err.println("Could not crawl " + configuration.getApiUrl() + ": " + e);
+            System.exit(1);
+        }
+
+        double seconds = crawler.getElapsed().toNanos() / 1e9;
+        System.err.printf("Crawled %d channels (%d failed), %d programs, %d requests in %.2f s: "
+                        + "%.1f channels/s, %.1f requests/s%n",
+                crawler.getChannelCount(), crawler.getFailedCount(), crawler.getProgramCount(),
+                crawler.getRequestCount(), seconds, crawler.getChannelCount() / seconds,
+                crawler.getRequestCount() / seconds);
+        System.exit(crawler.getFailedCount() == 0 ? 0 : 1);
+    }
+}
@@ -0,0 +1,213 @@
+package se.umu.cs.dv14vjn.radio.crawl;
+
+import se.umu.cs.dv14vjn.radio.Configuration;
+import se.umu.cs.dv14vjn.radio.DaemonThreadFactory;
+import se.umu.cs.dv14vjn.radio.ResponseParser;
+import se.umu.cs.dv14vjn.radio.channelinfo.Channel;
+import se.umu.cs.dv14vjn.radio.channelinfo.Program;
+import se.umu.cs.dv14vjn.radio.channelinfo.Schedule;
+import se.umu.cs.dv14vjn.radio.channelinfo.ScheduleDays;
+import se.umu.cs.dv14vjn.radio.net.RateLimitedTransport;
+import se.umu.cs.dv14vjn.radio.net.Response;
+import se.umu.cs.dv14vjn.radio.net.Transport;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.net.HttpURLConnection;
+import java.time.Duration;
+import java.time.LocalDate;
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Objects;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Crawler downloads the schedules of every channel without a user interface
+ * Channels are crawled in parallel by a configured number of workers, each requesting all days of its channel's
+ * window at once. All requests share one rate limit, so the crawl never sends more requests per second than
+ * configured however many workers there are.
+ * @author Vincent Johansson
+ */
+public class Crawler {
+
+    private static final Duration REQUEST_TIMEOUT = Duration.ofSeconds(10);
+
+    private final Configuration configuration;
+    private final RateLimitedTransport transport;
+    private final AtomicLong crawled = new AtomicLong();
+    private final AtomicLong failed = new AtomicLong();
+    private final AtomicLong programs = new AtomicLong();
+    private long elapsedNanos;
+
+    /**
+     * Initializes a new se.umu.cs.dv14vjn.radio.crawl.Crawler
+     * @param configuration Configuration with the API address, schedule window, concurrency and rate limit
+     * @param transport Transport the requests are sent with
+     */
+    public Crawler(Configuration configuration, Transport transport) {
+        this.configuration = configuration;
+        this.transport = new RateLimitedTransport(transport, configuration.getCrawlRate());
+    }
+
+    /**
+     * Crawl every channel and write each schedule as soon as it has been downloaded
+     * @param writer JsonLinesWriter the schedules are written to
+     * @throws IOException if the channel list could not be downloaded
+     */
+    public void crawl(JsonLinesWriter writer) throws IOException {
+        long start = System.nanoTime();
+        List<Channel> channels = downloadChannels();
+        long currentTime = System.currentTimeMillis();
+        List<LocalDate> dates = configuration.getWindowDates(currentTime);
+
+        ExecutorService workers = Executors.newFixedThreadPool(Math.max(1, configuration.getCrawlConcurrency()),
+                new DaemonThreadFactory("crawl"));
+        try {
+            List<Future<?>> tasks = new ArrayList<>();
+            for (Channel channel : channels) {
+                tasks.add(workers.submit(() -> crawlChannel(channel, dates, currentTime, writer)));
+            }
+            for (Future<?> task : tasks) {
+                try {
+                    task.get();
+                } catch (InterruptedException e) {
+                    Thread.currentThread().interrupt();
+                    return;
+                } catch (ExecutionException e) {
+                    e.printStackTrace();
+                }
+            }
+        } finally {
+            workers.shutdownNow();
+            elapsedNanos = System.nanoTime() - start;
+        }
+    }
+
+    /**
+     * Download the channel list, leaving out the extra channels just like the application does
+     * @return List of channels in menu order
+     */
+    private List<Channel> downloadChannels() throws IOException {
+        List<Channel> channels = new ArrayList<>();
+        ResponseParser.parseChannels(openBody(await(fetch(configuration.getChannelsUrl()))),
+                channel -> !Objects.equals(channel.getChanneltype(), "Extrakanaler"), channels);
+        return channels;
+    }
+
+    /**
+     * Download and write the schedule of one channel, a channel with a day that failed is not written
+     * @param channel se.umu.cs.dv14vjn.radio.channelinfo.Channel object
+     * @param dates List of the days in the window
+     * @param currentTime long time in milliseconds since the epoch the window is centered on
+     * @param writer JsonLinesWriter the schedule is written to
+     */
+    private void crawlChannel(Channel channel, List<LocalDate> dates, long currentTime, JsonLinesWriter writer) {
+        Map<LocalDate, CompletableFuture<Response>> responses = new LinkedHashMap<>();
+        for (LocalDate date : dates) {
+            responses.put(date, fetch(configuration.getScheduleUrl(channel.getId(), date)));
+        }
+
+        ScheduleDays days = ScheduleDays.EMPTY;
+        try {
+            for (Map.Entry<LocalDate, CompletableFuture<Response>> response : responses.entrySet()) {
+                List<Program> lst = new ArrayList<>();
+                ResponseParser.parsePrograms(openBody(await(response.getValue())), program -> true, lst);
+                days = days.withDay(response.getKey(), lst.toArray(Program[]::new));
+            }
+            Schedule schedule = days.window(currentTime - configuration.getWindowBefore().toMillis(),
+                    currentTime + configuration.getWindowAfter().toMillis());
+            writer.write(channel, schedule);
+            crawled.incrementAndGet();
+            programs.addAndGet(schedule.getSchedule().length);
+        } catch (IOException e) {
+            System.err.println("Could not crawl " + channel.getName() + ": " + e.getMessage());
+            failed.incrementAndGet();
+
+            /* Release the connections of the days that were never read */
+            responses.values().forEach(response -> response.thenAccept(Response::discard));
+        }
+    }
+
+    private CompletableFuture<Response> fetch(String url) {
+        return transport.get(url, Map.of(), REQUEST_TIMEOUT);
+    }
+
+    /**
+     * Wait for a response, a request that failed to connect or timed out is reported as an IOException
+     * @param response CompletableFuture completed with the response
+     * @return Response from the API
+     * @throws IOException if the request failed
+     */
+    private Response await(CompletableFuture<Response> response) throws IOException {
+        try {
+            return response.join();
+        } catch (CompletionException e) {
+            if (e.getCause() instanceof IOException cause) {
+                throw cause;
+            }
+            throw new IOException(e.getCause() != null ? e.getCause() : e);
+        }
+    }
+
+    /**
+     * Open the body of a response
+     * @param response Response from the API
+     * @return InputStream with the JSON data
+     * @throws IOException if the API did not answer 200 OK
+     */
+    private InputStream openBody(Response response) throws IOException {
+        if (response.getStatus() != HttpURLConnection.HTTP_OK) {
+            response.discard();
+            throw new IOException("HTTP " + response.getStatus());
+        }
+        return response.getBody();
+    }
+
+    /**
+     * Returns the number of channels that were written
+     * @return long number of channels
+     */
+    public long getChannelCount() {
+        return crawled.get();
+    }
+
+    /**
+     * Returns the number of channels that could not be downloaded
+     * @return long number of channels
+     */
+    public long getFailedCount() {
+        return failed.get();
+    }
+
+    /**
+     * Returns the number of programs that were written
+     * @return long number of programs
+     */
+    public long getProgramCount() {
+        return programs.get();
+    }
+
+    /**
+     * Returns the number of requests sent to the API
+     * @return long number of requests
+     */
+    public long getRequestCount() {
+        return transport.getRequestCount();
+    }
+
+    /**
+     * Returns how long the last crawl took
+     * @return Duration of the crawl
+     */
+    public Duration getElapsed() {
+        return Duration.ofNanos(elapsedNanos);
+    }
+}
@@ -0,0 +1,46 @@
+package se.umu.cs.dv14vjn.radio.crawl;
+
+import com.fasterxml.jackson.core.JsonEncoding;
+import com.fasterxml.jackson.core.JsonGenerator;
+import se.umu.cs.dv14vjn.radio.ScheduleJson;
+import se.umu.cs.dv14vjn.radio.channelinfo.Channel;
+import se.umu.cs.dv14vjn.radio.channelinfo.Schedule;
+
+import java.io.Closeable;
+import java.io.IOException;
+import java.io.OutputStream;
+
+/**
+ * JsonLinesWriter writes one JSON object per line for each crawled channel, with the channel and its programs
+ * Lines are written whole by one thread at a time, so channels finished in parallel never interleave
+ * @author Vincent Johansson
+ */
+public class JsonLinesWriter implements Closeable {
+
+    private final JsonGenerator generator;
+
+    /**
+     * Initializes a new se.umu.cs.dv14vjn.radio.crawl.JsonLinesWriter
+     * @param out OutputStream the lines are written to, closed when the writer is closed
+     */
+    public JsonLinesWriter(OutputStream out) throws IOException {
+        generator = ScheduleJson.FACTORY.createGenerator(out, JsonEncoding.UTF8);
+        generator.setRootValueSeparator(null);
+    }
+
+    /**
+     * Write the line of a channel
+     * @param channel se.umu.cs.dv14vjn.radio.channelinfo.Channel object
+     * @param schedule Schedule of the channel
+     */
+    public synchronized void write(Channel channel, Schedule schedule) throws IOException {
+        ScheduleJson.writeSchedule(generator, channel, schedule);
+        generator.writeRaw('\n');
+        generator.flush();
+    }
+
+    @Override
+    public void close() throws IOException {
+        generator.close();
+    }
+}
@@ -1,11 +1,32 @@
 package se.umu.cs.dv14vjn.radio.gui;
 
+import se.umu.cs.dv14vjn.radio.channelinfo.Program;
+
 /**
  * Interface for object that can be Observers (listeners)
+ * Listeners are called on the background thread that made the change, not on the event dispatch thread
  */
 public interface DataChangeListener {
     /**
-     * Data has been changed
+     * The schedule of a channel has been changed
+     * @param channelId int id of the channel whose schedule changed
+     */
+    void dataChanged(int channelId);
+
+    /**
+     * The channel list has been loaded or changed
+     */
+    void channelsChanged();
+
+    /**
+     * The image of a program has finished loading
+     * @param program Program whose image was loaded
+     */
+    void imageLoaded(Program program);
+
+    /**
+     * A request to the API failed
+     * @param message String describing the error to the user
      */
-    void dataChanged();
+    void errorOccurred(String message);
 }
@@ -1,20 +1,22 @@
 package se.umu.cs.dv14vjn.radio.gui;
 
 import se.umu.cs.dv14vjn.radio.channelinfo.Channel;
-import se.umu.cs.dv14vjn.radio.channelinfo.Channels;
 import se.umu.cs.dv14vjn.radio.channelinfo.Program;
 import se.umu.cs.dv14vjn.radio.channelinfo.Schedule;
 import se.umu.cs.dv14vjn.radio.APIHandler;
 
 import javax.swing.*;
-import javax.swing.table.DefaultTableModel;
 import javax.swing.table.TableColumn;
 import java.awt.*;
 import java.awt.event.ActionEvent;
 import java.awt.event.ActionListener;
 import java.awt.event.MouseAdapter;
 import java.awt.event.MouseEvent;
-import java.net.UnknownHostException;
+import java.awt.event.WindowAdapter;
+import java.awt.event.WindowEvent;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.ExecutionException;
 
 import static javax.swing.BorderFactory.createEmptyBorder;
 
@@ -28,47 +30,40 @@ public class GUI extends JFrame implements DataChangeListener {
     private CardLayout cardLayout;
     private final JLabel label;
     private JTable table;
-    private final DefaultTableModel tableModel;
-    private APIHandler handler;
+    private final ScheduleTableModel tableModel;
+    private final APIHandler handler;
+    private JMenu channelsMenu;
+    private JComboBox<String> channelDropdown;
+    private boolean fillingChannels;
     private Channel currentChannel;
+    private Timer imageRequestTimer;
 
     /**
      * Initializes a new se.umu.cs.dv14vjn.radio.gui.GUI
+     * The window is shown right away, the channel menu and dropdown are filled in when the handler
+     * reports that the channel list has been loaded
+     * @param handler APIHandler that is loading the channels
      */
-    public GUI() {
-        tableModel = new DefaultTableModel() {
-            public Class<?> getColumnClass(int column) {
-                return getValueAt(0, column).getClass();
-            }
-        };
+    public GUI(APIHandler handler) {
+        this.handler = handler;
+        tableModel = new ScheduleTableModel(handler::getImage);
 
         window = new JFrame("RadioInfo");
 
-        /* Initialize handler, get channels list from API and add to the Channels JMenu */
-        try {
-            this.handler = new APIHandler();
-        } catch (Exception e) {
-            if (e.getCause() instanceof UnknownHostException) {
-                JOptionPane.showMessageDialog(window,
-                        "Could not connect to the API, please check your internet connection");
-            } else {
-                JOptionPane.showMessageDialog(window, "An error occurred, please try again later");
-            }
-        }
-
-        label = new JLabel(" ");
+        label = new JLabel("Loading channels...");
         label.setFont(new Font("Arial", Font.BOLD, 18));
         window.add(label, BorderLayout.NORTH);
 
-        JPanel infoPanel = createInfoPanel(handler);
+        JPanel infoPanel = createInfoPanel();
         window.add(infoPanel, BorderLayout.CENTER);
+        window.setJMenuBar(createMenu(window));
+        initChannelMenu(window.getJMenuBar());
         window.pack();
         configureWindow();
 
-
-        window.setJMenuBar(createMenu(window));
+        /* Fill in the channels that are already known, the rest arrive through channelsChanged */
         handler.addDataChangeListener(this);
-        initChannelMenu(window.getJMenuBar(), handler);
+        channelsChanged();
     }
 
     /**
@@ -121,37 +116,51 @@ public class GUI extends JFrame implements DataChangeListener {
     }
 
     /**
-     * Initialize the Channels dropdown menu
+     * Initialize the Channels dropdown menu, it is filled by fillChannels
      * @param menuBar The menu bar to add the menu to
-     * @param handler The APIHandler to use
      */
-    private void initChannelMenu(JMenuBar menuBar, APIHandler handler) {
+    private void initChannelMenu(JMenuBar menuBar) {
         /* Create Channels drop down */
-        JMenu channelsMenu = new JMenu("Channel");
+        channelsMenu = new JMenu("Channel");
+        menuBar.add(channelsMenu);
+    }
+
+    /**
+     * Fill the Channels menu and the JComboBox with the channels currently known by the handler
+     */
+    private void fillChannels() {
+        String[] names = handler.getChannels().getNames();
+
         /* Add all channels as items in the menu */
-        Channels channels = handler.getChannels();
-        for (String channel : channels.getNames()) {
+        channelsMenu.removeAll();
+        for (String channel : names) {
             JMenuItem channelItem = new JMenuItem(channel);
             channelItem.addActionListener(e -> {
-                if (currentChannel != channels.getChannel(channel)){
+                Channel selected = handler.getChannels().getChannel(channel);
+                if (selected != null && (currentChannel == null || currentChannel.getId() != selected.getId())) {
                     /* Show text to user that new data is being loaded.  */
                     label.setText("Loading...");
                     /* Update the table with the information for the selected channel */
-                    updateTable(channels.getChannel(channel));
-                    currentChannel = channels.getChannel(channel);
+                    currentChannel = selected;
+                    handler.channelSelected(selected);
+                    updateTable(selected);
                 }
             });
             channelsMenu.add(channelItem);
         }
-        menuBar.add(channelsMenu);
+
+        /* Replacing the model selects its first item, which must not be treated as a user selection */
+        fillingChannels = true;
+        channelDropdown.setModel(new DefaultComboBoxModel<>(names));
+        fillingChannels = false;
     }
 
     /**
      * Creates the panel that contains the JTable and name which channel is currently displayed
-     * The JTable uses a DefaultTableModel to display the information
+     * The JTable uses a ScheduleTableModel to display the information
      * @return JPanel containing the JTable and JLabel components
      */
-    private JPanel createInfoPanel(APIHandler handler) {
+    private JPanel createInfoPanel() {
         cardLayout = new CardLayout();
         JPanel panel = new JPanel(cardLayout);
         //panel.setLayout(new BoxLayout(panel, BoxLayout.Y_AXIS));
@@ -159,16 +168,11 @@ public class GUI extends JFrame implements DataChangeListener {
         JLabel pickLabel = new JLabel("Pick a channel");
         pickLabel.setFont(new Font("Arial", Font.BOLD, 30));
 
-        // Get name for each channel and add to the dropdown menu
-        Channels channels = handler.getChannels();
-        String[] channelNames = new String[channels.getNames().length];
-        for (int i = 0; i < channels.getNames().length; i++) {
-            channelNames[i] = channels.getNames()[i];
-        }
-        JComboBox<String> channelDropdown = new JComboBox<>(channelNames);
+        // Dropdown menu, the channel names are added by fillChannels
+        channelDropdown = new JComboBox<>();
         channelDropdown.setRenderer(new CenterTextComboBoxRenderer(SwingConstants.CENTER));
         channelDropdown.setPreferredSize(new Dimension(100,25));
-        channelDropdown.addActionListener(new DropdownListener(channelDropdown, panel, channels));
+        channelDropdown.addActionListener(new DropdownListener(channelDropdown, panel));
 
         // Create panel with GridBagLayout to arrange label and JComboBox position
         JPanel dropdownPanel = new JPanel(new GridBagLayout());
@@ -199,6 +203,11 @@ public class GUI extends JFrame implements DataChangeListener {
         JScrollPane scrollPane = new JScrollPane(table, JScrollPane.VERTICAL_SCROLLBAR_ALWAYS,
                 JScrollPane.HORIZONTAL_SCROLLBAR_NEVER);
         scrollPane.setBorder(createEmptyBorder());
+
+        /* Request the images around the viewport once scrolling has paused */
+        imageRequestTimer = new Timer(100, e -> requestVisibleImages());
+        imageRequestTimer.setRepeats(false);
+        scrollPane.getViewport().addChangeListener(e -> imageRequestTimer.restart());
         label.setAlignmentX(Component.LEFT_ALIGNMENT);
         panel.add(scrollPane, "table");
         return panel;
@@ -206,64 +215,123 @@ public class GUI extends JFrame implements DataChangeListener {
 
     /**
      * Updates the tableModel with the information for the selected channel
+     * The latest version of the channel is looked up in the handler, since channels are replaced when they change
      * @param channel The channel to get the information for
      */
     private void updateTable(Channel channel) {
-        /* Clear the table */
-        tableModel.setRowCount(0);
-        final Channel finalChannel = channel;
+        /* Clear the table and cancel the images still queued for the previous rows */
+        tableModel.setPrograms(new Program[0]);
+        handler.requestImages(List.of());
 
         if (channel != null) {
-            SwingWorker<Void, Void> worker = new SwingWorker<>() {
+            final int channelId = channel.getId();
+            SwingWorker<Channel, Void> worker = new SwingWorker<>() {
                 @Override
-                protected Void doInBackground() {
-                    if (!finalChannel.isCached()) {
-                        finalChannel.setSchedule(handler.parseSchedule(finalChannel));
-                        finalChannel.setCached();
+                protected Channel doInBackground() {
+                    Channel latest = handler.getChannels().getChannel(channelId);
+                    if (latest != null && !latest.isCached()) {
+                        latest = handler.cacheSchedule(latest);
                     }
-                    return null;
+                    return latest;
                 }
 
                 @Override
                 protected void done() {
-                    /* Add the rows with info about the programs in the schedule */
-                    Schedule schedule = finalChannel.getSchedule();
-                    for (Program program : schedule.getSchedule()) {
-                        JLabel iconLabel = new JLabel();
-                        iconLabel.setIcon(new ImageIcon(program.getImage()));
-                        tableModel.addRow(new Object[]{iconLabel.getIcon(), program.getTitle(),
-                                program.getDescription(), program.getLocalTime(program.getStarttimeutc())});
+                    Channel loaded;
+                    try {
+                        loaded = get();
+                    } catch (InterruptedException | ExecutionException e) {
+                        e.printStackTrace();
+                        return;
+                    }
+                    /* Another channel may have been selected while this one was loading */
+                    if (loaded == null || loaded.getSchedule() == null || currentChannel == null
+                            || currentChannel.getId() != channelId) {
+                        return;
                     }
-                    label.setText("Currently showing: " + channel.getName());
+
+                    /* Show the programs in the schedule, image cells stay empty until they have been
+                     * requested for the viewport and imageLoaded is called */
+                    Schedule schedule = loaded.getSchedule();
+                    tableModel.setPrograms(schedule.getSchedule());
+                    handler.showPrograms(schedule.getSchedule());
+                    requestVisibleImages();
+                    label.setText("Currently showing: " + loaded.getName());
                 }
             };
             worker.execute();
         }
     }
 
+    /**
+     * Replace the programs of the channel shown with its latest schedule
+     * The rows are swapped in one step, so the table is never emptied and the scroll position is kept. Images
+     * already in memory are shown right away and only the missing ones around the viewport are requested.
+     * @param channelId int id of the channel shown
+     */
+    private void refreshTable(int channelId) {
+        Channel latest = handler.getChannels().getChannel(channelId);
+        if (latest == null || latest.getSchedule() == null) {
+            return;
+        }
+        Program[] programs = latest.getSchedule().getSchedule();
+        if (programs == tableModel.getPrograms()) {
+            return;
+        }
+        tableModel.setPrograms(programs);
+        handler.showPrograms(programs);
+        requestVisibleImages();
+    }
+
+    /**
+     * Request the images of the rows in the viewport, followed by the rows up to one viewport above and below
+     * it ordered by their distance from it. Rows further away are not loaded until they are scrolled to.
+     */
+    private void requestVisibleImages() {
+        Program[] shownPrograms = tableModel.getPrograms();
+        if (shownPrograms.length == 0) {
+            return;
+        }
+        Rectangle visible = table.getVisibleRect();
+        int first = table.rowAtPoint(visible.getLocation());
+        int last = table.rowAtPoint(new Point(visible.x, visible.y + visible.height - 1));
+        first = first < 0 ? 0 : first;
+        last = last < 0 ? shownPrograms.length - 1 : last;
+
+        List<Program> programs = new ArrayList<>();
+        for (int row = first; row <= last; row++) {
+            programs.add(shownPrograms[row]);
+        }
+        int margin = last - first + 1;
+        for (int distance = 1; distance <= margin; distance++) {
+            if (last + distance < shownPrograms.length) {
+                programs.add(shownPrograms[last + distance]);
+            }
+            if (first - distance >= 0) {
+                programs.add(shownPrograms[first - distance]);
+            }
+        }
+        handler.requestImages(programs);
+    }
+
     /**
      * Configures the appearance of the JTable
      * @param table The JTable to configure
      */
     private void configureTable(JTable table) {
-        /* Add columns to the table model */
-        tableModel.addColumn("");
-        tableModel.addColumn("Title");
-        tableModel.addColumn("Description");
-        tableModel.addColumn("Start time");
-
-        /* Setup appearance of the table */
+        /* Setup appearance of the table, all image cells share one renderer */
+        table.setDefaultRenderer(Image.class, new ThumbnailRenderer(60, 40));
         table.setRowHeight(35);
         table.setShowGrid(false);
         table.setIntercellSpacing(new Dimension(0, 0));
         table.setFillsViewportHeight(true);
 
         /* Set column widths */
-        TableColumn imgColumn = table.getColumnModel().getColumn(0);
+        TableColumn imgColumn = table.getColumnModel().getColumn(ScheduleTableModel.IMAGE_COLUMN);
         setColumnWidth(imgColumn, 60);
-        TableColumn titleColumn = table.getColumnModel().getColumn(1);
+        TableColumn titleColumn = table.getColumnModel().getColumn(ScheduleTableModel.TITLE_COLUMN);
         setColumnWidth(titleColumn, 200);
-        TableColumn timeColumn = table.getColumnModel().getColumn(3);
+        TableColumn timeColumn = table.getColumnModel().getColumn(ScheduleTableModel.TIME_COLUMN);
         setColumnWidth(timeColumn, 150);
 
         /* Disable user resizing of columns */
@@ -332,9 +400,17 @@ public class GUI extends JFrame implements DataChangeListener {
 
     /**
      * Configure the JFrame window
+     * Closing the window, or choosing Close in the menu, stops the handler before the application exits
      */
     private void configureWindow() {
-        window.setDefaultCloseOperation(JFrame.EXIT_ON_CLOSE);
+        window.setDefaultCloseOperation(JFrame.DISPOSE_ON_CLOSE);
+        window.addWindowListener(new WindowAdapter() {
+            @Override
+            public void windowClosed(WindowEvent e) {
+                handler.close();
+                System.exit(0);
+            }
+        });
         window.setSize(1000, 500);
         window.setLocationRelativeTo(null);
         window.setVisible(true);
@@ -342,12 +418,54 @@ public class GUI extends JFrame implements DataChangeListener {
 
     /**
      * Overrides the dataChanged method from the DataListener interface
-     * Updates the table with the new data
+     * Replaces the programs in the table on the event dispatch thread if the changed channel is the one shown,
+     * changes to other channels are picked up when they are selected
+     * @param channelId int id of the channel whose schedule changed
      */
     @Override
-    public void dataChanged() {
-        updateTable(currentChannel);
-        table.repaint();
+    public void dataChanged(int channelId) {
+        SwingUtilities.invokeLater(() -> {
+            if (currentChannel != null && currentChannel.getId() == channelId) {
+                refreshTable(channelId);
+            }
+        });
+    }
+
+    /**
+     * Overrides the channelsChanged method from the DataListener interface
+     * Fills the channel menu and dropdown with the loaded channels on the event dispatch thread
+     */
+    @Override
+    public void channelsChanged() {
+        SwingUtilities.invokeLater(() -> {
+            if (handler.getChannels().getNames().length > 0) {
+                fillChannels();
+                if (currentChannel == null) {
+                    label.setText(" ");
+                }
+            }
+        });
+    }
+
+    /**
+     * Overrides the imageLoaded method from the DataListener interface
+     * Repaints the image cell of the program's row on the event dispatch thread
+     * @param program Program whose image was loaded
+     */
+    @Override
+    public void imageLoaded(Program program) {
+        SwingUtilities.invokeLater(() -> tableModel.imageLoaded(program));
+    }
+
+    /**
+     * Overrides the errorOccurred method from the DataListener interface
+     * Shows the error in a dialog on the event dispatch thread
+     * @param message String describing the error
+     */
+    @Override
+    public void errorOccurred(String message) {
+        SwingUtilities.invokeLater(() -> JOptionPane.showMessageDialog(null, message, "Error",
+                JOptionPane.ERROR_MESSAGE));
     }
 
     /**
@@ -356,24 +474,27 @@ public class GUI extends JFrame implements DataChangeListener {
     private class DropdownListener implements ActionListener {
         private final JComboBox<String> dropdown;
         private final JPanel panel;
-        private final Channels channels;
 
         /**
          * Constructor for the DropdownListener
          * @param dropdown JComboBox<String>
          * @param panel JPanel with CardLayout to trigger change when actionPerformed is called
-         * @param channels Channels object containing HashMap with all channels
          */
-        public DropdownListener(JComboBox<String> dropdown, JPanel panel, Channels channels) {
+        public DropdownListener(JComboBox<String> dropdown, JPanel panel) {
             this.dropdown = dropdown;
             this.panel = panel;
-            this.channels = channels;
         }
 
         @Override
         public void actionPerformed(ActionEvent e) {
+            if (fillingChannels) {
+                return;
+            }
             String selected = (String) dropdown.getSelectedItem();
-            currentChannel = channels.getChannel(selected);
+            currentChannel = handler.getChannels().getChannel(selected);
+            if (currentChannel != null) {
+                handler.channelSelected(currentChannel);
+            }
             updateTable(currentChannel);
             cardLayout.show(panel, "table");
         }
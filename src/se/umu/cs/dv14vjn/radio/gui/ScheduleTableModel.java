@@ -0,0 +1,94 @@
+package se.umu.cs.dv14vjn.radio.gui;
+
+import se.umu.cs.dv14vjn.radio.channelinfo.Program;
+
+import javax.swing.table.AbstractTableModel;
+import java.awt.*;
+import java.util.function.Function;
+
+/**
+ * ScheduleTableModel is a TableModel that reads the rows of the schedule table straight from a Program array
+ * Replacing the programs fires a single table event, and the cells are only computed for the rows that are painted
+ * @author Vincent Johansson
+ */
+public class ScheduleTableModel extends AbstractTableModel {
+
+    public static final int IMAGE_COLUMN = 0;
+    public static final int TITLE_COLUMN = 1;
+    public static final int DESCRIPTION_COLUMN = 2;
+    public static final int TIME_COLUMN = 3;
+
+    private static final String[] COLUMN_NAMES = {"", "Title", "Description", "Start time"};
+
+    private final Function<Program, Image> images;
+    private Program[] programs = new Program[0];
+
+    /**
+     * Initializes a new se.umu.cs.dv14vjn.radio.gui.ScheduleTableModel
+     * @param images Function returning the image of a program, or null while it is not loaded
+     */
+    public ScheduleTableModel(Function<Program, Image> images) {
+        this.images = images;
+    }
+
+    /**
+     * Show a new set of programs, the array is used as it is and must not be changed afterwards
+     * @param programs Program array in display order
+     */
+    public void setPrograms(Program[] programs) {
+        this.programs = programs;
+        fireTableDataChanged();
+    }
+
+    /**
+     * Returns the programs shown
+     * @return Program array in display order
+     */
+    public Program[] getPrograms() {
+        return programs;
+    }
+
+    /**
+     * Repaint the image cells of the rows showing a program
+     * @param program Program whose image was loaded
+     */
+    public void imageLoaded(Program program) {
+        for (int row = 0; row < programs.length; row++) {
+            if (programs[row] == program) {
+                fireTableCellUpdated(row, IMAGE_COLUMN);
+            }
+        }
+    }
+
+    @Override
+    public int getRowCount() {
+        return programs.length;
+    }
+
+    @Override
+    public int getColumnCount() {
+        return COLUMN_NAMES.length;
+    }
+
+    @Override
+    public String getColumnName(int column) {
+        return COLUMN_NAMES[column];
+    }
+
+    @Override
+    public Class<?> getColumnClass(int column) {
+        return column == IMAGE_COLUMN ? Image.class : String.class;
+    }
+
+    @Override
+    public Object getValueAt(int row, int column) {
+        Program program = programs[row];
+        return switch (column) {
+            case IMAGE_COLUMN -> images.apply(program);
+            case TITLE_COLUMN -> program.getTitle();
+            case DESCRIPTION_COLUMN -> program.getDescription();
+            case TIME_COLUMN -> program.getLocalTime();
+            default -> throw new IndexOutOfBoundsException("Column " + column);
+        };
+    }
+}
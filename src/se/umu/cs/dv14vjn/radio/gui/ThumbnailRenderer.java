@@ -0,0 +1,65 @@
+package se.umu.cs.dv14vjn.radio.gui;
+
+import javax.swing.*;
+import javax.swing.table.DefaultTableCellRenderer;
+import java.awt.*;
+
+/**
+ * ThumbnailRenderer draws the program images of the schedule table
+ * One renderer and one icon are shared by every cell, the icon paints whichever image the cell holds
+ * and leaves the cell empty while the image is loading
+ * @author Vincent Johansson
+ */
+public class ThumbnailRenderer extends DefaultTableCellRenderer {
+
+    private final ThumbnailIcon icon;
+
+    /**
+     * Initializes a new se.umu.cs.dv14vjn.radio.gui.ThumbnailRenderer
+     * @param width int width reserved for an image that is still loading
+     * @param height int height reserved for an image that is still loading
+     */
+    public ThumbnailRenderer(int width, int height) {
+        icon = new ThumbnailIcon(width, height);
+        setIcon(icon);
+    }
+
+    @Override
+    public Component getTableCellRendererComponent(JTable table, Object value, boolean isSelected,
+                                                   boolean hasFocus, int row, int column) {
+        super.getTableCellRendererComponent(table, null, isSelected, hasFocus, row, column);
+        icon.image = value instanceof Image ? (Image) value : null;
+        return this;
+    }
+
+    /**
+     * Icon painting the image of the cell currently being rendered
+     */
+    private static class ThumbnailIcon implements Icon {
+        private final int width;
+        private final int height;
+        private Image image;
+
+        private ThumbnailIcon(int width, int height) {
+            this.width = width;
+            this.height = height;
+        }
+
+        @Override
+        public void paintIcon(Component c, Graphics g, int x, int y) {
+            if (image != null) {
+                g.drawImage(image, x, y, null);
+            }
+        }
+
+        @Override
+        public int getIconWidth() {
+            return image != null ? image.getWidth(null) : width;
+        }
+
+        @Override
+        public int getIconHeight() {
+            return image != null ? image.getHeight(null) : height;
+        }
+    }
+}
@@ -0,0 +1,226 @@
+package se.umu.cs.dv14vjn.radio.images;
+
+import se.umu.cs.dv14vjn.radio.DaemonThreadFactory;
+import se.umu.cs.dv14vjn.radio.SingleFlight;
+import se.umu.cs.dv14vjn.radio.channelinfo.Program;
+import se.umu.cs.dv14vjn.radio.net.Response;
+import se.umu.cs.dv14vjn.radio.net.Transport;
+
+import java.awt.*;
+import java.awt.image.BufferedImage;
+import java.io.IOException;
+import java.io.InputStream;
+import java.net.HttpURLConnection;
+import java.net.URI;
+import java.time.Duration;
+import java.util.*;
+import java.util.List;
+import java.util.concurrent.*;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.function.Consumer;
+
+/**
+ * ImageLoader downloads program images in the background on a bounded pool of threads, in the order they
+ * are requested
+ * Scaled images are shared through a ThumbnailCache so each URL is only downloaded once, programs do not hold
+ * on to their images so only the images of the shown programs are kept in memory
+ * @author Vincent Johansson
+ */
+public class ImageLoader {
+
+    private static final int MAX_THREADS = 8;
+    private static final int MAX_CONNECTIONS_PER_HOST = 4;
+    private static final Duration REQUEST_TIMEOUT = Duration.ofSeconds(15);
+
+    private final ExecutorService executor;
+    private final AtomicLong generation = new AtomicLong();
+    private final SingleFlight<String, BufferedImage> downloads = new SingleFlight<>();
+    private final Map<String, Semaphore> hostPermits = new ConcurrentHashMap<>();
+    private final Transport transport;
+    private final ThumbnailCache cache;
+    private final String defaultImageUrl;
+
+    /**
+     * Initializes a new se.umu.cs.dv14vjn.radio.images.ImageLoader
+     * @param transport Transport used to download the images
+     * @param cache ThumbnailCache shared by all loaded programs
+     * @param defaultImageUrl String URL of the image used for programs without one
+     */
+    public ImageLoader(Transport transport, ThumbnailCache cache, String defaultImageUrl) {
+        this.transport = transport;
+        this.cache = cache;
+        this.defaultImageUrl = defaultImageUrl;
+        executor = Executors.newFixedThreadPool(MAX_THREADS, new DaemonThreadFactory("image-loader"));
+    }
+
+    /**
+     * Make the images of the programs that are shown the ones kept in memory, the images of all other
+     * programs are released. Nothing is loaded, images are requested with request.
+     * @param programs Program array that is shown
+     */
+    public void show(Program[] programs) {
+        Set<String> keys = new HashSet<>();
+        for (Program program : programs) {
+            keys.add(key(program));
+        }
+        cache.pin(keys);
+    }
+
+    /**
+     * Load the images of programs in the given order, replacing the previous request
+     * Images of the previous request that have not started loading are cancelled, and programs sharing an
+     * image are loaded once. Returns without waiting for the images.
+     * @param programs List of programs, the most important first
+     * @param onLoaded Callback invoked from a background thread each time the image of a program is available
+     */
+    public void request(List<Program> programs, Consumer<Program> onLoaded) {
+        long request = generation.incrementAndGet();
+        Map<String, List<Program>> byKey = new LinkedHashMap<>();
+        for (Program program : programs) {
+            String key = key(program);
+            if (cache.peek(key) == null) {
+                byKey.computeIfAbsent(key, k -> new ArrayList<>()).add(program);
+            }
+        }
+
+        for (List<Program> sharing : byKey.values()) {
+            executor.execute(() -> {
+                /* Cancelled by a newer request */
+                if (generation.get() != request) {
+                    return;
+                }
+                /* A malformed URL or an image that cannot be decoded fails like a download, the rows keep
+                 * their placeholder */
+                try {
+                    load(sharing.get(0));
+                } catch (RuntimeException e) {
+                    e.printStackTrace();
+                    return;
+                }
+                sharing.forEach(onLoaded);
+            });
+        }
+    }
+
+    /**
+     * Load the image of a program into the cache on the calling thread, without notifying anyone
+     * Used to warm the disk tier for programs that are not shown yet
+     * @param program Program whose image should be loaded
+     */
+    public void prefetch(Program program) {
+        try {
+            load(program);
+        } catch (RuntimeException e) {
+            e.printStackTrace();
+        }
+    }
+
+    /**
+     * Returns the image of a program if it is held in memory
+     * @param program Program whose image is shown
+     * @return Image scaled for the schedule table, null if it has not been loaded or was evicted
+     */
+    public Image getImage(Program program) {
+        return cache.peek(key(program));
+    }
+
+    /**
+     * Make sure the image of a program is in the cache
+     * @param program Program whose image should be loaded
+     */
+    private void load(Program program) {
+        if (program.getImageurl() != null) {
+            thumbnail(program.getImageurl(), 60, 40);
+        } else {
+            thumbnail(defaultImageUrl, 60, 50);
+        }
+    }
+
+    /**
+     * Returns the cache key of a program's image, programs without an image share the default one
+     * @param program Program
+     * @return String key created by ThumbnailCache.key()
+     */
+    private String key(Program program) {
+        return program.getImageurl() != null ? ThumbnailCache.key(program.getImageurl(), 60, 40)
+                : ThumbnailCache.key(defaultImageUrl, 60, 50);
+    }
+
+    /**
+     * Returns the scaled image from the cache, downloading it on a miss
+     * Threads missing the same image at the same time share one download
+     * @param url String URL to the image
+     * @param width int width of the scaled image
+     * @param height int height of the scaled image
+     * @return BufferedImage scaled to the given size
+     */
+    private BufferedImage thumbnail(String url, int width, int height) {
+        String key = ThumbnailCache.key(url, width, height);
+        BufferedImage image = cache.get(key);
+        if (image != null) {
+            return image;
+        }
+        return downloads.execute(key, () -> {
+            /* A download that finished just before this one started has already filled the cache */
+            BufferedImage downloaded = cache.peek(key);
+            if (downloaded != null) {
+                return downloaded;
+            }
+            try {
+                downloaded = download(url, width, height);
+            } catch (IOException | InterruptedException e) {
+                throw new CompletionException(e);
+            }
+            cache.put(key, downloaded);
+            return downloaded;
+        });
+    }
+
+    /**
+     * Download and scale an image, waiting for a free connection slot to the host first
+     * @param urlString String URL to the image
+     * @param width int width of the scaled image
+     * @param height int height of the scaled image
+     * @return BufferedImage scaled to the given size
+     */
+    private BufferedImage download(String urlString, int width, int height) throws IOException, InterruptedException {
+        Semaphore permits = hostPermits.computeIfAbsent(URI.create(urlString).getHost(),
+                host -> new Semaphore(MAX_CONNECTIONS_PER_HOST));
+        permits.acquire();
+        try {
+            Response response = transport.get(urlString, Map.of(), REQUEST_TIMEOUT).join();
+            if (response.getStatus() != HttpURLConnection.HTTP_OK) {
+                response.discard();
+                throw new IOException("HTTP " + response.getStatus() + " for " + urlString);
+            }
+            try (InputStream body = response.getBody()) {
+                return ThumbnailDecoder.decode(body, width, height);
+            }
+        } finally {
+            permits.release();
+        }
+    }
+
+    /**
+     * Returns the number of image downloads that were shared with a download already in flight
+     * @return long number of deduplicated downloads
+     */
+    public long getDeduplicatedCount() {
+        return downloads.getDeduplicatedCount();
+    }
+
+    /**
+     * Returns the thumbnail cache used by the loader
+     * @return ThumbnailCache
+     */
+    public ThumbnailCache getCache() {
+        return cache;
+    }
+
+    /**
+     * Stop accepting new downloads
+     */
+    public void shutdown() {
+        executor.shutdownNow();
+    }
+}
@@ -0,0 +1,388 @@
+package se.umu.cs.dv14vjn.radio.images;
+
+import javax.imageio.ImageIO;
+import java.awt.image.BufferedImage;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.DirectoryStream;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.attribute.FileTime;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+
+/**
+ * ThumbnailCache stores scaled program images keyed by image URL and size
+ * Images are kept in a byte-bounded in-memory LRU and, optionally, written to a directory on disk
+ * so that they survive restarts. The disk tier has its own byte budget, the least recently used files are
+ * deleted when it is exceeded.
+ * The images of the programs currently shown can be pinned. Pinned images are the last to be evicted, and
+ * pinning a new set evicts every image that is no longer pinned from memory, so the memory used follows
+ * what is on screen. Evicted images are read back from disk when they are shown again.
+ * @author Vincent Johansson
+ */
+public class ThumbnailCache {
+
+    private final LinkedHashMap<String, BufferedImage> memory = new LinkedHashMap<>(64, 0.75f, true);
+    private final long maxBytes;
+    private Set<String> pinned = Set.of();
+    private final Path diskDirectory;
+    private final long maxDiskBytes;
+    private final LinkedHashMap<String, Long> diskFiles = new LinkedHashMap<>(64, 0.75f, true);
+    private long diskBytes;
+    private long currentBytes;
+    private long hits;
+    private long diskHits;
+    private long misses;
+    private long evictions;
+
+    /**
+     * Initializes a new se.umu.cs.dv14vjn.radio.images.ThumbnailCache
+     * @param maxBytes long maximum number of bytes of decoded images kept in memory
+     * @param diskDirectory Path to the directory of the disk tier, null to only cache in memory
+     * @param maxDiskBytes long maximum number of bytes of image files kept in the disk tier
+     */
+    public ThumbnailCache(long maxBytes, Path diskDirectory, long maxDiskBytes) {
+        this.maxBytes = maxBytes;
+        this.diskDirectory = diskDirectory;
+        this.maxDiskBytes = maxDiskBytes;
+        if (diskDirectory != null) {
+            try {
+                Files.createDirectories(diskDirectory);
+                scanDisk();
+            } catch (IOException e) {
+                e.printStackTrace();
+            }
+        }
+    }
+
+    /**
+     * Read the files of the disk tier into the disk LRU, oldest first, and prune it to the budget
+     * Temporary files left behind by writes that were interrupted are deleted
+     */
+    private void scanDisk() throws IOException {
+        List<Path> files = new ArrayList<>();
+        try (DirectoryStream<Path> directory = Files.newDirectoryStream(diskDirectory)) {
+            for (Path file : directory) {
+                String name = file.getFileName().toString();
+                if (name.startsWith("thumb") && name.endsWith(".tmp")) {
+                    Files.deleteIfExists(file);
+                } else if (name.endsWith(".png")) {
+                    files.add(file);
+                }
+            }
+        }
+
+        /* The modification time is refreshed on every disk hit, so it orders the files by last use */
+        Map<Path, Long> modified = new HashMap<>();
+        for (Path file : files) {
+            modified.put(file, Files.getLastModifiedTime(file).toMillis());
+        }
+        files.sort(Comparator.comparing(modified::get));
+        synchronized (diskFiles) {
+            for (Path file : files) {
+                long size = Files.size(file);
+                diskFiles.put(file.getFileName().toString(), size);
+                diskBytes += size;
+            }
+            pruneDisk();
+        }
+    }
+
+    /**
+     * Create the cache key for an image URL scaled to the given size
+     * @param url String URL to the image
+     * @param width int width of the scaled image
+     * @param height int height of the scaled image
+     * @return String key
+     */
+    public static String key(String url, int width, int height) {
+        return url + "@" + width + "x" + height;
+    }
+
+    /**
+     * Returns the cached image for the key, looking in memory first and on disk second
+     * @param key String key created by key()
+     * @return BufferedImage, null if the image is not cached
+     */
+    public BufferedImage get(String key) {
+        synchronized (this) {
+            BufferedImage image = memory.get(key);
+            if (image != null) {
+                hits++;
+                return image;
+            }
+        }
+
+        BufferedImage image = readFromDisk(key);
+        synchronized (this) {
+            if (image != null) {
+                diskHits++;
+                putInMemory(key, image);
+            } else {
+                misses++;
+            }
+        }
+        return image;
+    }
+
+    /**
+     * Returns the image for the key if it is held in memory, without touching the disk tier or the counters
+     * @param key String key created by key()
+     * @return BufferedImage, null if the image is not in memory
+     */
+    public synchronized BufferedImage peek(String key) {
+        return memory.get(key);
+    }
+
+    /**
+     * Pin the images that are currently shown and evict all other images from memory
+     * @param keys Set of keys created by key(), replaces the previously pinned keys
+     */
+    public synchronized void pin(Set<String> keys) {
+        pinned = Set.copyOf(keys);
+        Iterator<Map.Entry<String, BufferedImage>> entries = memory.entrySet().iterator();
+        while (entries.hasNext()) {
+            Map.Entry<String, BufferedImage> entry = entries.next();
+            if (!pinned.contains(entry.getKey())) {
+                currentBytes -= sizeOf(entry.getValue());
+                entries.remove();
+                evictions++;
+            }
+        }
+    }
+
+    /**
+     * Add an image to the cache
+     * @param key String key created by key()
+     * @param image BufferedImage to cache
+     */
+    public void put(String key, BufferedImage image) {
+        synchronized (this) {
+            putInMemory(key, image);
+        }
+        writeToDisk(key, image);
+    }
+
+    /**
+     * Add an image to the memory tier and evict the least recently used images until it fits the budget,
+     * images that are not pinned go first
+     * Must be called while holding the lock on this cache
+     * @param key String key
+     * @param image BufferedImage to add
+     */
+    private void putInMemory(String key, BufferedImage image) {
+        BufferedImage previous = memory.put(key, image);
+        if (previous != null) {
+            currentBytes -= sizeOf(previous);
+        }
+        currentBytes += sizeOf(image);
+        evict(key, false);
+        evict(key, true);
+    }
+
+    /**
+     * Evict the least recently used images until the memory tier fits the budget
+     * @param keep String key of the image being added, never evicted
+     * @param includePinned true to also evict pinned images
+     */
+    private void evict(String keep, boolean includePinned) {
+        Iterator<Map.Entry<String, BufferedImage>> eldest = memory.entrySet().iterator();
+        while (currentBytes > maxBytes && eldest.hasNext()) {
+            Map.Entry<String, BufferedImage> entry = eldest.next();
+            if (entry.getKey().equals(keep) || (!includePinned && pinned.contains(entry.getKey()))) {
+                continue;
+            }
+            currentBytes -= sizeOf(entry.getValue());
+            eldest.remove();
+            evictions++;
+        }
+    }
+
+    /**
+     * Read an image from the disk tier
+     * @param key String key
+     * @return BufferedImage, null if the disk tier is disabled or does not contain the image
+     */
+    private BufferedImage readFromDisk(String key) {
+        if (diskDirectory == null) {
+            return null;
+        }
+        String name = fileName(key);
+        synchronized (diskFiles) {
+            if (diskFiles.get(name) == null) {
+                return null;
+            }
+        }
+        Path file = diskDirectory.resolve(name);
+        try {
+            /* PNG files decode to a byte layout, render them again so they paint as fast as fresh thumbnails */
+            BufferedImage image = ImageIO.read(file.toFile());
+            if (image == null) {
+                return null;
+            }
+            Files.setLastModifiedTime(file, FileTime.fromMillis(System.currentTimeMillis()));
+            return ThumbnailDecoder.rasterize(image, image.getWidth(), image.getHeight());
+        } catch (IOException e) {
+            /* Pruned by another thread after it was looked up, the image is downloaded again */
+            return null;
+        }
+    }
+
+    /**
+     * Write an image to the disk tier, going through a temporary file so readers never see a partial image
+     * @param key String key
+     * @param image BufferedImage to write
+     */
+    private void writeToDisk(String key, BufferedImage image) {
+        if (diskDirectory == null) {
+            return;
+        }
+        String name = fileName(key);
+        Path temp = null;
+        try {
+            temp = Files.createTempFile(diskDirectory, "thumb", ".tmp");
+            ImageIO.write(image, "png", temp.toFile());
+            long size = Files.size(temp);
+            Files.move(temp, diskDirectory.resolve(name), StandardCopyOption.REPLACE_EXISTING,
+                    StandardCopyOption.ATOMIC_MOVE);
+            temp = null;
+            synchronized (diskFiles) {
+                Long previous = diskFiles.put(name, size);
+                diskBytes += size - (previous != null ? previous : 0);
+                pruneDisk();
+            }
+        } catch (IOException e) {
+            e.printStackTrace();
+        } finally {
+            if (temp != null) {
+                try {
+                    Files.deleteIfExists(temp);
+                } catch (IOException e) {
+                    e.printStackTrace();
+                }
+            }
+        }
+    }
+
+    /**
+     * Delete the least recently used files of the disk tier until it fits the budget
+     * Must be called while holding the lock on diskFiles
+     */
+    private void pruneDisk() {
+        Iterator<Map.Entry<String, Long>> eldest = diskFiles.entrySet().iterator();
+        while (diskBytes > maxDiskBytes && eldest.hasNext()) {
+            Map.Entry<String, Long> entry = eldest.next();
+            try {
+                Files.deleteIfExists(diskDirectory.resolve(entry.getKey()));
+            } catch (IOException e) {
+                e.printStackTrace();
+                continue;
+            }
+            diskBytes -= entry.getValue();
+            eldest.remove();
+        }
+    }
+
+    /**
+     * Returns the file name used for a key in the disk tier
+     * @param key String key
+     * @return String hex encoded SHA-1 of the key
+     */
+    private static String fileName(String key) {
+        try {
+            byte[] digest = MessageDigest.getInstance("SHA-1").digest(key.getBytes(StandardCharsets.UTF_8));
+            StringBuilder name = new StringBuilder();
+            for (byte b : digest) {
+                name.append(String.format("%02x", b));
+            }
+            return name.append(".png").toString();
+        } catch (NoSuchAlgorithmException e) {
+            throw new IllegalStateException(e);
+        }
+    }
+
+    /**
+     * Returns the number of bytes a decoded image occupies
+     * @param image BufferedImage
+     * @return long size in bytes
+     */
+    private static long sizeOf(BufferedImage image) {
+        return (long) image.getWidth() * image.getHeight() * 4;
+    }
+
+    /**
+     * Returns the number of lookups answered from memory
+     * @return long memory hits
+     */
+    public synchronized long getHits() {
+        return hits;
+    }
+
+    /**
+     * Returns the number of lookups answered from the disk tier
+     * @return long disk hits
+     */
+    public synchronized long getDiskHits() {
+        return diskHits;
+    }
+
+    /**
+     * Returns the number of lookups that had to be downloaded
+     * @return long misses
+     */
+    public synchronized long getMisses() {
+        return misses;
+    }
+
+    /**
+     * Returns the number of images evicted from memory to stay within the budget
+     * @return long evictions
+     */
+    public synchronized long getEvictions() {
+        return evictions;
+    }
+
+    /**
+     * Returns the number of bytes of decoded images currently held in memory
+     * @return long bytes in memory
+     */
+    public synchronized long getMemoryBytes() {
+        return currentBytes;
+    }
+
+    /**
+     * Returns the maximum number of bytes of decoded images kept in memory
+     * @return long memory budget in bytes
+     */
+    public long getMaxBytes() {
+        return maxBytes;
+    }
+
+    /**
+     * Returns the number of bytes of image files currently kept in the disk tier
+     * @return long bytes on disk
+     */
+    public long getDiskBytes() {
+        synchronized (diskFiles) {
+            return diskBytes;
+        }
+    }
+
+    /**
+     * Returns the number of images currently held in memory
+     * @return int images in memory
+     */
+    public synchronized int getImageCount() {
+        return memory.size();
+    }
+}
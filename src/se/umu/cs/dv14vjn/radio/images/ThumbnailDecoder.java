@@ -0,0 +1,82 @@
+package se.umu.cs.dv14vjn.radio.images;
+
+import javax.imageio.ImageIO;
+import javax.imageio.ImageReadParam;
+import javax.imageio.ImageReader;
+import javax.imageio.stream.ImageInputStream;
+import java.awt.*;
+import java.awt.image.BufferedImage;
+import java.io.IOException;
+import java.io.InputStream;
+import java.util.Iterator;
+
+/**
+ * ThumbnailDecoder turns encoded image data into a thumbnail of a fixed size
+ * The source is subsampled while it is decoded so that only about as many pixels as the thumbnail needs are
+ * ever decoded, and the result is rendered once into an image compatible with the screen, so that painting
+ * it on the event dispatch thread is a plain copy
+ * @author Vincent Johansson
+ */
+public class ThumbnailDecoder {
+
+    private ThumbnailDecoder() {
+    }
+
+    /**
+     * Decode an image and scale it to the given size
+     * @param in InputStream with the encoded image
+     * @param width int width of the thumbnail
+     * @param height int height of the thumbnail
+     * @return BufferedImage of the given size
+     */
+    public static BufferedImage decode(InputStream in, int width, int height) throws IOException {
+        try (ImageInputStream stream = ImageIO.createImageInputStream(in)) {
+            Iterator<ImageReader> readers = stream != null ? ImageIO.getImageReaders(stream) : null;
+            if (readers == null || !readers.hasNext()) {
+                throw new IOException("Unsupported image format");
+            }
+            ImageReader reader = readers.next();
+            try {
+                reader.setInput(stream, true, true);
+
+                /* Skip pixels while decoding, but never go below the size of the thumbnail */
+                int step = Math.max(1, Math.min(reader.getWidth(0) / width, reader.getHeight(0) / height));
+                ImageReadParam param = reader.getDefaultReadParam();
+                param.setSourceSubsampling(step, step, 0, 0);
+                return rasterize(reader.read(0, param), width, height);
+            } finally {
+                reader.dispose();
+            }
+        }
+    }
+
+    /**
+     * Render an image into a new image of the given size that is compatible with the screen
+     * @param source BufferedImage to render
+     * @param width int width of the new image
+     * @param height int height of the new image
+     * @return BufferedImage of the given size
+     */
+    public static BufferedImage rasterize(BufferedImage source, int width, int height) {
+        BufferedImage scaled = createCompatibleImage(width, height);
+        Graphics2D g = scaled.createGraphics();
+        g.setRenderingHint(RenderingHints.KEY_INTERPOLATION, RenderingHints.VALUE_INTERPOLATION_BILINEAR);
+        g.drawImage(source, 0, 0, width, height, null);
+        g.dispose();
+        return scaled;
+    }
+
+    /**
+     * Create an empty translucent image in the pixel layout of the default screen
+     * @param width int width of the image
+     * @param height int height of the image
+     * @return BufferedImage, TYPE_INT_ARGB when there is no screen
+     */
+    private static BufferedImage createCompatibleImage(int width, int height) {
+        if (GraphicsEnvironment.isHeadless()) {
+            return new BufferedImage(width, height, BufferedImage.TYPE_INT_ARGB);
+        }
+        return GraphicsEnvironment.getLocalGraphicsEnvironment().getDefaultScreenDevice()
+                .getDefaultConfiguration().createCompatibleImage(width, height, Transparency.TRANSLUCENT);
+    }
+}
@@ -0,0 +1,79 @@
+package se.umu.cs.dv14vjn.radio.net;
+
+import se.umu.cs.dv14vjn.radio.DaemonThreadFactory;
+
+import java.io.ByteArrayInputStream;
+import java.net.URI;
+import java.net.http.HttpClient;
+import java.net.http.HttpRequest;
+import java.net.http.HttpResponse;
+import java.time.Duration;
+import java.util.Map;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
+
+/**
+ * Transport built on a single shared HttpClient
+ * Connections are kept alive and reused between requests, HTTP/2 is used when the server supports it
+ * and response bodies are requested gzip compressed
+ * Bodies are read in full before the response is handed out, and the timeout covers the whole exchange, so a
+ * server that stalls in the middle of a body cannot block the caller
+ * @author Vincent Johansson
+ */
+public class HttpClientTransport implements Transport {
+
+    private static final Duration CONNECT_TIMEOUT = Duration.ofSeconds(5);
+
+    private final ExecutorService executor =
+            Executors.newCachedThreadPool(new DaemonThreadFactory("http-client"));
+    private final HttpClient client;
+
+    /**
+     * Initializes a new se.umu.cs.dv14vjn.radio.net.HttpClientTransport
+     */
+    public HttpClientTransport() {
+        client = HttpClient.newBuilder()
+                .version(HttpClient.Version.HTTP_2)
+                .followRedirects(HttpClient.Redirect.NORMAL)
+                .connectTimeout(CONNECT_TIMEOUT)
+                .executor(executor)
+                .build();
+    }
+
+    @Override
+    public CompletableFuture<Response> get(String url, Map<String, String> headers, Duration timeout) {
+        HttpRequest.Builder request = HttpRequest.newBuilder(URI.create(url))
+                .timeout(timeout)
+                .header("Accept-Encoding", "gzip")
+                .GET();
+        headers.forEach(request::header);
+
+        /* The request timeout only covers the headers, the deadline on the copy covers the body as well and
+         * aborts the exchange once it has passed */
+        CompletableFuture<HttpResponse<byte[]>> exchange =
+                client.sendAsync(request.build(), HttpResponse.BodyHandlers.ofByteArray());
+        return exchange.copy()
+                .orTimeout(timeout.toMillis(), TimeUnit.MILLISECONDS)
+                .whenComplete((response, e) -> {
+                    if (e instanceof TimeoutException) {
+                        exchange.cancel(true);
+                    }
+                })
+                .thenApply(HttpClientTransport::toResponse);
+    }
+
+    /**
+     * Stop the threads of the client, the selector thread ends once the client is no longer referenced
+     */
+    @Override
+    public void close() {
+        executor.shutdownNow();
+    }
+
+    private static Response toResponse(HttpResponse<byte[]> response) {
+        return new Response(response.statusCode(), response.headers(), new ByteArrayInputStream(response.body()));
+    }
+}
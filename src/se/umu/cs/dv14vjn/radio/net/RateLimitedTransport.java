@@ -0,0 +1,69 @@
+package se.umu.cs.dv14vjn.radio.net;
+
+import java.time.Duration;
+import java.util.Map;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Transport that spaces out the requests of another transport to at most a number of requests per second
+ * Every request reserves the next free slot and is sent when its slot comes up, callers are never blocked
+ * while they wait. The limit is shared by every thread using the transport.
+ * @author Vincent Johansson
+ */
+public class RateLimitedTransport implements Transport {
+
+    private final Transport transport;
+    private final long interval;
+    private final AtomicLong nextSlot = new AtomicLong(System.nanoTime());
+    private final AtomicLong requests = new AtomicLong();
+
+    /**
+     * Initializes a new se.umu.cs.dv14vjn.radio.net.RateLimitedTransport
+     * @param transport Transport the requests are sent with
+     * @param requestsPerSecond double maximum number of requests per second, 0 or less for no limit
+     */
+    public RateLimitedTransport(Transport transport, double requestsPerSecond) {
+        this.transport = transport;
+        this.interval = requestsPerSecond > 0 ? (long) (TimeUnit.SECONDS.toNanos(1) / requestsPerSecond) : 0;
+    }
+
+    @Override
+    public CompletableFuture<Response> get(String url, Map<String, String> headers, Duration timeout) {
+        requests.incrementAndGet();
+        long delay = reserve();
+        if (delay <= 0) {
+            return transport.get(url, headers, timeout);
+        }
+        return CompletableFuture.runAsync(() -> {
+        }, CompletableFuture.delayedExecutor(delay, TimeUnit.NANOSECONDS))
+                .thenCompose(ignored -> transport.get(url, headers, timeout));
+    }
+
+    /**
+     * Reserve the next free slot, a slot missed while the transport was idle is not made up for later
+     * @return long nanoseconds until the reserved slot
+     */
+    private long reserve() {
+        if (interval == 0) {
+            return 0;
+        }
+        long now = System.nanoTime();
+        long slot = nextSlot.getAndAccumulate(now, (next, time) -> Math.max(next, time) + interval);
+        return Math.max(slot, now) - now;
+    }
+
+    /**
+     * Returns the number of requests made through the transport
+     * @return long number of requests
+     */
+    public long getRequestCount() {
+        return requests.get();
+    }
+
+    @Override
+    public void close() {
+        transport.close();
+    }
+}
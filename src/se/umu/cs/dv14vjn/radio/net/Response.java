@@ -0,0 +1,68 @@
+package se.umu.cs.dv14vjn.radio.net;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.net.http.HttpHeaders;
+import java.util.zip.GZIPInputStream;
+
+/**
+ * Response object that stores the status, headers and body of a request
+ * @author Vincent Johansson
+ */
+public class Response {
+
+    private final int status;
+    private final HttpHeaders headers;
+    private final InputStream body;
+
+    /**
+     * Initializes a new se.umu.cs.dv14vjn.radio.net.Response
+     * @param status int HTTP status code
+     * @param headers HttpHeaders of the response
+     * @param body InputStream with the body as sent by the server
+     */
+    public Response(int status, HttpHeaders headers, InputStream body) {
+        this.status = status;
+        this.headers = headers;
+        this.body = body;
+    }
+
+    /**
+     * Returns the HTTP status code
+     * @return int status code
+     */
+    public int getStatus() {
+        return status;
+    }
+
+    /**
+     * Returns the first value of a response header
+     * @param name String header name
+     * @return String header value, null if the header is missing
+     */
+    public String getHeader(String name) {
+        return headers.firstValue(name).orElse(null);
+    }
+
+    /**
+     * Returns the body of the response, decompressed if the server sent it gzip encoded
+     * @return InputStream with the body
+     */
+    public InputStream getBody() throws IOException {
+        if ("gzip".equalsIgnoreCase(getHeader("Content-Encoding"))) {
+            return new GZIPInputStream(body);
+        }
+        return body;
+    }
+
+    /**
+     * Discard the body, releasing the connection for reuse
+     */
+    public void discard() {
+        try {
+            body.close();
+        } catch (IOException e) {
+            e.printStackTrace();
+        }
+    }
+}
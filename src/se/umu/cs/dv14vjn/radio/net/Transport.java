@@ -0,0 +1,28 @@
+package se.umu.cs.dv14vjn.radio.net;
+
+import java.time.Duration;
+import java.util.Map;
+import java.util.concurrent.CompletableFuture;
+
+/**
+ * Interface for the transport used to make requests to the API and image servers
+ * @author Vincent Johansson
+ */
+public interface Transport extends AutoCloseable {
+    /**
+     * Make a GET request
+     * @param url String URL to request
+     * @param headers Map with extra request headers, may be empty
+     * @param timeout Duration after which the request is abandoned, including the time to read the body
+     * @return CompletableFuture completed with the response once its body has arrived, or with a
+     * TimeoutException once the timeout has passed
+     */
+    CompletableFuture<Response> get(String url, Map<String, String> headers, Duration timeout);
+
+    /**
+     * Stop the threads of the transport, requests still in flight may fail
+     */
+    @Override
+    default void close() {
+    }
+}
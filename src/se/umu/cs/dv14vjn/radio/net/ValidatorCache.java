@@ -0,0 +1,142 @@
+package se.umu.cs.dv14vjn.radio.net;
+
+import java.net.HttpURLConnection;
+import java.time.ZonedDateTime;
+import java.time.format.DateTimeFormatter;
+import java.time.format.DateTimeParseException;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * ValidatorCache remembers the ETag and Last-Modified validators of each URL so that later requests
+ * can be made conditional, and counts how often the server answered 304 Not Modified versus 200 OK
+ * It also remembers how long the server said each response stays fresh, from Cache-Control max-age or Expires
+ * @author Vincent Johansson
+ */
+public class ValidatorCache {
+
+    private final Map<String, Validators> validators = new ConcurrentHashMap<>();
+    private final Map<String, Long> expiries = new ConcurrentHashMap<>();
+    private final AtomicLong notModified = new AtomicLong();
+    private final AtomicLong modified = new AtomicLong();
+
+    /**
+     * Returns the conditional request headers for a URL
+     * @param url String URL that is about to be requested
+     * @return Map with If-None-Match and/or If-Modified-Since, empty if the URL has no stored validators
+     */
+    public Map<String, String> conditionalHeaders(String url) {
+        Validators stored = validators.get(url);
+        Map<String, String> headers = new HashMap<>();
+        if (stored != null) {
+            if (stored.etag != null) {
+                headers.put("If-None-Match", stored.etag);
+            }
+            if (stored.lastModified != null) {
+                headers.put("If-Modified-Since", stored.lastModified);
+            }
+        }
+        return headers;
+    }
+
+    /**
+     * Record the outcome of a request, storing the validators of a 200 response
+     * @param url String URL that was requested
+     * @param response Response received for the URL
+     */
+    public void record(String url, Response response) {
+        if (response.getStatus() == HttpURLConnection.HTTP_NOT_MODIFIED
+                || response.getStatus() == HttpURLConnection.HTTP_OK) {
+            long expires = expiry(response, System.currentTimeMillis());
+            if (expires > 0) {
+                expiries.put(url, expires);
+            } else {
+                expiries.remove(url);
+            }
+        }
+        if (response.getStatus() == HttpURLConnection.HTTP_NOT_MODIFIED) {
+            notModified.incrementAndGet();
+        } else if (response.getStatus() == HttpURLConnection.HTTP_OK) {
+            modified.incrementAndGet();
+            String etag = response.getHeader("ETag");
+            String lastModified = response.getHeader("Last-Modified");
+            if (etag != null || lastModified != null) {
+                validators.put(url, new Validators(etag, lastModified));
+            } else {
+                validators.remove(url);
+            }
+        }
+    }
+
+    /**
+     * Returns the time the last response for a URL stops being fresh according to the server
+     * @param url String URL that was requested
+     * @return long time in milliseconds since the epoch, 0 if the server did not say
+     */
+    public long getExpiry(String url) {
+        return expiries.getOrDefault(url, 0L);
+    }
+
+    /**
+     * Work out when a response expires, Cache-Control max-age takes precedence over Expires
+     */
+    private static long expiry(Response response, long now) {
+        String cacheControl = response.getHeader("Cache-Control");
+        if (cacheControl != null) {
+            for (String directive : cacheControl.split(",")) {
+                directive = directive.trim();
+                if (directive.equals("no-cache") || directive.equals("no-store")) {
+                    return now;
+                }
+                if (directive.startsWith("max-age=")) {
+                    try {
+                        return now + Long.parseLong(directive.substring(8)) * 1000;
+                    } catch (NumberFormatException e) {
+                        return 0;
+                    }
+                }
+            }
+        }
+        String expires = response.getHeader("Expires");
+        if (expires != null) {
+            try {
+                return ZonedDateTime.parse(expires, DateTimeFormatter.RFC_1123_DATE_TIME).toInstant().toEpochMilli();
+            } catch (DateTimeParseException e) {
+                /* An invalid date means already expired */
+                return now;
+            }
+        }
+        return 0;
+    }
+
+    /**
+     * Returns the number of responses that were 304 Not Modified
+     * @return long number of 304 responses
+     */
+    public long getNotModifiedCount() {
+        return notModified.get();
+    }
+
+    /**
+     * Returns the number of responses that were 200 OK
+     * @return long number of 200 responses
+     */
+    public long getModifiedCount() {
+        return modified.get();
+    }
+
+    /**
+     * The validators stored for one URL
+     */
+    private static class Validators {
+        private final String etag;
+        private final String lastModified;
+
+        private Validators(String etag, String lastModified) {
+            this.etag = etag;
+            this.lastModified = lastModified;
+        }
+    }
+}
@@ -0,0 +1,143 @@
+package se.umu.cs.dv14vjn.radio.server;
+
+import com.fasterxml.jackson.core.JsonEncoding;
+import com.fasterxml.jackson.core.JsonGenerator;
+import com.sun.net.httpserver.Headers;
+import com.sun.net.httpserver.HttpExchange;
+import se.umu.cs.dv14vjn.radio.ScheduleJson;
+
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.net.HttpURLConnection;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.util.HexFormat;
+import java.util.zip.GZIPOutputStream;
+
+/**
+ * JsonBody is a JSON document serialized and compressed once, ready to be sent any number of times
+ * The entity tag is derived from the content, so a document rebuilt with the same content keeps its tag and
+ * clients that already have it get 304 Not Modified. The compressed representation has a tag of its own.
+ * @author Vincent Johansson
+ */
+public class JsonBody {
+
+    private final byte[] json;
+    private final byte[] gzipped;
+    private final String etag;
+    private final String gzipEtag;
+
+    /**
+     * Functional interface writing the content of a document
+     */
+    public interface Content {
+        /**
+         * Write the document
+         * @param generator JsonGenerator positioned where the root value is expected
+         */
+        void write(JsonGenerator generator) throws IOException;
+    }
+
+    /**
+     * Initializes a new se.umu.cs.dv14vjn.radio.server.JsonBody by writing its content
+     * @param content Content writing the document
+     */
+    public JsonBody(Content content) {
+        try {
+            ByteArrayOutputStream out = new ByteArrayOutputStream();
+            try (JsonGenerator generator = ScheduleJson.FACTORY.createGenerator(out, JsonEncoding.UTF8)) {
+                content.write(generator);
+            }
+            json = out.toByteArray();
+
+            out = new ByteArrayOutputStream(json.length / 4 + 64);
+            try (GZIPOutputStream gzip = new GZIPOutputStream(out)) {
+                gzip.write(json);
+            }
+            gzipped = out.toByteArray();
+        } catch (IOException e) {
+            /* Writing to memory never fails */
+            throw new UncheckedIOException(e);
+        }
+        String hash = hash(json);
+        etag = "\"" + hash + "\"";
+        gzipEtag = "\"" + hash + "-gzip\"";
+    }
+
+    /**
+     * Send the document, compressed if the client accepts gzip, or 304 Not Modified if the client already has it
+     * @param exchange HttpExchange of the request
+     * @param head true to send only the headers
+     */
+    public void send(HttpExchange exchange, boolean head) throws IOException {
+        Headers request = exchange.getRequestHeaders();
+        boolean compress = accepts(request.getFirst("Accept-Encoding"));
+        Headers response = exchange.getResponseHeaders();
+        response.set("Content-Type", "application/json; charset=utf-8");
+        response.set("Cache-Control", "no-cache");
+        response.set("Vary", "Accept-Encoding");
+        response.set("ETag", compress ? gzipEtag : etag);
+
+        if (matches(request.getFirst("If-None-Match"))) {
+            exchange.sendResponseHeaders(HttpURLConnection.HTTP_NOT_MODIFIED, -1);
+            return;
+        }
+        byte[] body = compress ? gzipped : json;
+        if (compress) {
+            response.set("Content-Encoding", "gzip");
+        }
+        exchange.sendResponseHeaders(HttpURLConnection.HTTP_OK, head ? -1 : body.length);
+        if (!head) {
+            exchange.getResponseBody().write(body);
+        }
+    }
+
+    /**
+     * Returns the size of the uncompressed document
+     * @return int number of bytes
+     */
+    public int getLength() {
+        return json.length;
+    }
+
+    /**
+     * Returns the size of the compressed document
+     * @return int number of bytes
+     */
+    public int getCompressedLength() {
+        return gzipped.length;
+    }
+
+    /**
+     * Returns whether an If-None-Match header lists either representation of this document
+     */
+    private boolean matches(String ifNoneMatch) {
+        if (ifNoneMatch == null) {
+            return false;
+        }
+        for (String tag : ifNoneMatch.split(",")) {
+            tag = tag.trim();
+            if (tag.startsWith("W/")) {
+                tag = tag.substring(2);
+            }
+            if (tag.equals("*") || tag.equals(etag) || tag.equals(gzipEtag)) {
+                return true;
+            }
+        }
+        return false;
+    }
+
+    private static boolean accepts(String acceptEncoding) {
+        return acceptEncoding != null && acceptEncoding.toLowerCase().contains("gzip");
+    }
+
+    private static String hash(byte[] content) {
+        try {
+            byte[] digest = MessageDigest.getInstance("SHA-256").digest(content);
+            return HexFormat.of().formatHex(digest, 0, 12);
+        } catch (NoSuchAlgorithmException e) {
+            throw new IllegalStateException(e);
+        }
+    }
+}
@@ -0,0 +1,350 @@
+package se.umu.cs.dv14vjn.radio.server;
+
+import com.sun.net.httpserver.HttpExchange;
+import com.sun.net.httpserver.HttpServer;
+import se.umu.cs.dv14vjn.radio.APIHandler;
+import se.umu.cs.dv14vjn.radio.DaemonThreadFactory;
+import se.umu.cs.dv14vjn.radio.ScheduleJson;
+import se.umu.cs.dv14vjn.radio.channelinfo.Channel;
+import se.umu.cs.dv14vjn.radio.channelinfo.Channels;
+import se.umu.cs.dv14vjn.radio.channelinfo.Program;
+import se.umu.cs.dv14vjn.radio.channelinfo.Schedule;
+import se.umu.cs.dv14vjn.radio.gui.DataChangeListener;
+import se.umu.cs.dv14vjn.radio.images.ThumbnailCache;
+import se.umu.cs.dv14vjn.radio.net.ValidatorCache;
+import se.umu.cs.dv14vjn.radio.storage.ScheduleArchive;
+
+import java.io.IOException;
+import java.net.HttpURLConnection;
+import java.net.InetSocketAddress;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicReferenceArray;
+
+/**
+ * ScheduleServer serves the channels and schedules held by an APIHandler over HTTP, so that many clients can
+ * share one instance polling the API
+ * Routes, all answering GET and HEAD:
+ * /channels lists the channels, /channels/{id}/schedule returns the cached schedule of a channel and
+ * /channels/{id}/nowplaying returns the program on air. /stats returns the request, cache and deduplication
+ * counters of the server and the handler.
+ * Requests are answered from memory only and never reach the API. Every document is serialized and compressed
+ * once per published version of the channels and carries a content based ETag. Since the channels are immutable,
+ * a new version is noticed by reference and only the channels that changed are serialized again. The server
+ * also asks the handler to cache the schedule of every channel, which from then on keeps them up to date.
+ * @author Vincent Johansson
+ */
+public class ScheduleServer implements DataChangeListener {
+
+    private static final String CHANNELS_PATH = "/channels";
+    private static final String STATS_PATH = "/stats";
+
+    static {
+        /* Headers and body are written separately, without TCP_NODELAY every response waits for a delayed
+         * ACK. The JDK reads the property once, when the first server of the process is created. */
+        if (System.getProperty("sun.net.httpserver.nodelay") == null) {
+            System.setProperty("sun.net.httpserver.nodelay", "true");
+        }
+    }
+
+    private final APIHandler handler;
+    private final HttpServer server;
+    private final ExecutorService executor;
+    private final ExecutorService warmup =
+            Executors.newSingleThreadExecutor(new DaemonThreadFactory("server-warmup"));
+    private final AtomicLong requests = new AtomicLong();
+    private volatile Published published = new Published(null, null, Map.of());
+
+    /**
+     * Initializes a new se.umu.cs.dv14vjn.radio.server.ScheduleServer, the server is started with start
+     * @param handler APIHandler whose channels are served
+     * @param address InetSocketAddress to listen on, port 0 picks a free port
+     * @param threads int number of threads answering requests
+     */
+    public ScheduleServer(APIHandler handler, InetSocketAddress address, int threads) throws IOException {
+        this.handler = handler;
+        server = HttpServer.create(address, 0);
+        executor = Executors.newFixedThreadPool(Math.max(1, threads), new DaemonThreadFactory("schedule-server"));
+        server.setExecutor(executor);
+        server.createContext(CHANNELS_PATH, this::handle);
+        server.createContext(STATS_PATH, this::handle);
+    }
+
+    /**
+     * Start answering requests and start caching the schedule of every channel in the background
+     */
+    public void start() {
+        handler.addDataChangeListener(this);
+        warmup.execute(this::cacheAll);
+        server.start();
+    }
+
+    /**
+     * Stop the server, requests in progress are abandoned
+     */
+    public void stop() {
+        handler.removeDataChangeListener(this);
+        server.stop(0);
+        executor.shutdownNow();
+        warmup.shutdownNow();
+    }
+
+    /**
+     * Returns the port the server listens on
+     * @return int port
+     */
+    public int getPort() {
+        return server.getAddress().getPort();
+    }
+
+    /**
+     * Returns the number of requests answered
+     * @return long number of requests
+     */
+    public long getRequestCount() {
+        return requests.get();
+    }
+
+    /**
+     * Overrides the channelsChanged method from the DataListener interface
+     * Caches the schedules of channels that were added to the list
+     */
+    @Override
+    public void channelsChanged() {
+        warmup.execute(this::cacheAll);
+    }
+
+    @Override
+    public void dataChanged(int channelId) {
+    }
+
+    @Override
+    public void imageLoaded(Program program) {
+    }
+
+    @Override
+    public void errorOccurred(String message) {
+        System.err.println(message);
+    }
+
+    /**
+     * Cache the schedule of every channel that is not cached yet, one channel at a time
+     */
+    private void cacheAll() {
+        Channels channels = handler.getChannels();
+        for (String name : channels.getNames()) {
+            Channel channel = channels.getChannel(name);
+            if (!channel.isCached()) {
+                handler.cacheSchedule(channel);
+            }
+        }
+    }
+
+    private void handle(HttpExchange exchange) throws IOException {
+        requests.incrementAndGet();
+        try {
+            String method = exchange.getRequestMethod();
+            boolean head = method.equals("HEAD");
+            if (!head && !method.equals("GET")) {
+                exchange.getResponseHeaders().set("Allow", "GET, HEAD");
+                exchange.sendResponseHeaders(HttpURLConnection.HTTP_BAD_METHOD, -1);
+                return;
+            }
+            JsonBody body = route(exchange.getRequestURI().getPath());
+            if (body == null) {
+                exchange.sendResponseHeaders(HttpURLConnection.HTTP_NOT_FOUND, -1);
+                return;
+            }
+            body.send(exchange, head);
+        } finally {
+            exchange.close();
+        }
+    }
+
+    /**
+     * Returns the document for a path
+     * @param path String path of the request
+     * @return JsonBody, null if there is no such document or the channel's schedule is not cached yet
+     */
+    private JsonBody route(String path) {
+        String[] parts = path.split("/");
+        if (parts.length == 2 && parts[1].equals("stats")) {
+            return stats();
+        }
+        if (parts.length < 2 || !parts[1].equals("channels")) {
+            return null;
+        }
+        Published current = published();
+        if (parts.length == 2) {
+            return current.channels;
+        }
+        if (parts.length != 4) {
+            return null;
+        }
+        ChannelBodies bodies;
+        try {
+            bodies = current.byId.get(Integer.parseInt(parts[2]));
+        } catch (NumberFormatException e) {
+            return null;
+        }
+        if (bodies == null) {
+            return null;
+        }
+        return switch (parts[3]) {
+            case "schedule" -> bodies.schedule;
+            case "nowplaying" -> bodies.nowPlaying(System.currentTimeMillis());
+            default -> null;
+        };
+    }
+
+    /**
+     * Serialize the current counters, the document is built for every request since the counters keep changing
+     * @return JsonBody with the counters
+     */
+    private JsonBody stats() {
+        ValidatorCache validators = handler.getValidatorCache();
+        ThumbnailCache thumbnails = handler.getThumbnailCache();
+        ScheduleArchive archive = handler.getArchive();
+        Channels channels = handler.getChannels();
+        return new JsonBody(generator -> {
+            generator.writeStartObject();
+            generator.writeNumberField("requests", requests.get());
+            generator.writeNumberField("notModified", validators.getNotModifiedCount());
+            generator.writeNumberField("modified", validators.getModifiedCount());
+            generator.writeNumberField("deduplicated", handler.getDeduplicatedCount());
+
+            generator.writeObjectFieldStart("thumbnails");
+            generator.writeNumberField("hits", thumbnails.getHits());
+            generator.writeNumberField("diskHits", thumbnails.getDiskHits());
+            generator.writeNumberField("misses", thumbnails.getMisses());
+            generator.writeNumberField("evictions", thumbnails.getEvictions());
+            generator.writeNumberField("images", thumbnails.getImageCount());
+            generator.writeNumberField("memoryBytes", thumbnails.getMemoryBytes());
+            generator.writeNumberField("maxBytes", thumbnails.getMaxBytes());
+            generator.writeNumberField("diskBytes", thumbnails.getDiskBytes());
+            generator.writeEndObject();
+
+            if (archive != null) {
+                long archived = 0;
+                for (String name : channels.getNames()) {
+                    archived += archive.getProgramCount(channels.getChannel(name).getId());
+                }
+                generator.writeNumberField("archivedPrograms", archived);
+            }
+            generator.writeEndObject();
+        });
+    }
+
+    /**
+     * Returns the documents for the latest channels, serializing them first if the handler published new ones
+     * @return Published documents
+     */
+    private Published published() {
+        Published current = published;
+        if (current.source == handler.getChannels()) {
+            return current;
+        }
+        synchronized (this) {
+            current = published;
+            Channels channels = handler.getChannels();
+            if (current.source != channels) {
+                current = publish(channels, current);
+                published = current;
+            }
+            return current;
+        }
+    }
+
+    /**
+     * Serialize the documents of a version of the channels, reusing those of channels that did not change
+     * @param channels Channels object to serialize
+     * @param previous Published documents of the previous version
+     * @return Published documents
+     */
+    private static Published publish(Channels channels, Published previous) {
+        Map<Integer, ChannelBodies> byId = new HashMap<>();
+        for (String name : channels.getNames()) {
+            Channel channel = channels.getChannel(name);
+            if (channel.getSchedule() == null) {
+                continue;
+            }
+            ChannelBodies known = previous.byId.get(channel.getId());
+            byId.put(channel.getId(), known != null && known.channel == channel ? known : new ChannelBodies(channel));
+        }
+
+        JsonBody list = new JsonBody(generator -> {
+            generator.writeStartArray();
+            for (String name : channels.getNames()) {
+                Channel channel = channels.getChannel(name);
+                generator.writeStartObject();
+                ScheduleJson.writeChannelFields(generator, channel);
+                generator.writeBooleanField("cached", byId.containsKey(channel.getId()));
+                generator.writeEndObject();
+            }
+            generator.writeEndArray();
+        });
+        return new Published(channels, list, byId);
+    }
+
+    /**
+     * Documents serialized from one version of the channels
+     */
+    private static final class Published {
+        private final Channels source;
+        private final JsonBody channels;
+        private final Map<Integer, ChannelBodies> byId;
+
+        private Published(Channels source, JsonBody channels, Map<Integer, ChannelBodies> byId) {
+            this.source = source;
+            this.channels = channels;
+            this.byId = byId;
+        }
+    }
+
+    /**
+     * Documents of one version of a channel with a schedule
+     * The now playing documents are serialized the first time each program is asked for
+     */
+    private static final class ChannelBodies {
+        private final Channel channel;
+        private final JsonBody schedule;
+        private final AtomicReferenceArray<JsonBody> nowPlaying;
+
+        private ChannelBodies(Channel channel) {
+            this.channel = channel;
+            schedule = new JsonBody(generator ->
+                    ScheduleJson.writeSchedule(generator, channel, channel.getSchedule()));
+
+            /* One slot per program and a last one for when nothing is on */
+            nowPlaying = new AtomicReferenceArray<>(channel.getSchedule().getSchedule().length + 1);
+        }
+
+        private JsonBody nowPlaying(long time) {
+            Schedule programs = channel.getSchedule();
+            int index = programs.rangeStart(time);
+            if (index >= programs.getSchedule().length || programs.getStartTime(index) > time) {
+                index = nowPlaying.length() - 1;
+            }
+            JsonBody body = nowPlaying.get(index);
+            if (body == null) {
+                int shown = index;
+                body = new JsonBody(generator -> {
+                    generator.writeStartObject();
+                    ScheduleJson.writeChannelFields(generator, channel);
+                    generator.writeFieldName("program");
+                    if (shown < programs.getSchedule().length) {
+                        ScheduleJson.writeProgram(generator, programs, shown);
+                    } else {
+                        generator.writeNull();
+                    }
+                    generator.writeEndObject();
+                });
+                nowPlaying.compareAndSet(index, null, body);
+            }
+            return body;
+        }
+    }
+}
@@ -0,0 +1,110 @@
+package se.umu.cs.dv14vjn.radio.storage;
+
+import java.io.Closeable;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+
+/**
+ * MappedFile is a file that is only ever appended to, written and read through a memory mapping
+ * The header holds the length of the committed data. The mapping grows by doubling, the space after the
+ * committed length is unused and overwritten by the next append. The length is written after the data it
+ * covers, so an append that is cut short by a crash is never seen. A mapping is limited to 2 GB.
+ * @author Vincent Johansson
+ */
+class MappedFile implements Closeable {
+
+    /**
+     * Size of the header, the first byte of data is at this offset
+     */
+    static final int HEADER = 16;
+
+    private static final int INITIAL_CAPACITY = 64 * 1024;
+
+    private final FileChannel channel;
+    private volatile MappedByteBuffer buffer;
+    private volatile long length;
+
+    /**
+     * Initializes a new se.umu.cs.dv14vjn.radio.storage.MappedFile, creating the file if it does not exist
+     * @param file Path to the file
+     * @param magic int identifying the kind of file
+     * @param version int format version
+     * @throws IOException if the file is of another kind or version, or could not be mapped
+     */
+    MappedFile(Path file, int magic, int version) throws IOException {
+        channel = FileChannel.open(file, StandardOpenOption.CREATE, StandardOpenOption.READ,
+                StandardOpenOption.WRITE);
+        long size = channel.size();
+        buffer = channel.map(FileChannel.MapMode.READ_WRITE, 0, Math.max(size, INITIAL_CAPACITY));
+        if (size == 0) {
+            buffer.putInt(0, magic);
+            buffer.putInt(4, version);
+            buffer.putLong(8, HEADER);
+        } else if (buffer.getInt(0) != magic || buffer.getInt(4) != version) {
+            channel.close();
+            throw new IOException("Unsupported file " + file);
+        }
+        length = buffer.getLong(8);
+        if (length < HEADER || length > buffer.capacity()) {
+            channel.close();
+            throw new IOException("Corrupt file " + file);
+        }
+    }
+
+    /**
+     * Append data, the caller must not append from several threads at once
+     * @param data ByteBuffer with the data between its position and limit
+     * @return long offset of the data in the file
+     */
+    long append(ByteBuffer data) throws IOException {
+        long offset = length;
+        int size = data.remaining();
+        MappedByteBuffer target = ensureCapacity(offset + size);
+        target.put((int) offset, data, data.position(), size);
+        length = offset + size;
+        target.putLong(8, length);
+        return offset;
+    }
+
+    /**
+     * Returns the mapping to read from, valid up to the committed length at the time it was returned
+     * Use absolute reads only, the buffer is shared by all readers
+     * @return ByteBuffer over the whole file
+     */
+    ByteBuffer buffer() {
+        return buffer;
+    }
+
+    /**
+     * Returns the length of the committed data including the header
+     * @return long length in bytes
+     */
+    long length() {
+        return length;
+    }
+
+    private MappedByteBuffer ensureCapacity(long required) throws IOException {
+        MappedByteBuffer current = buffer;
+        if (required <= current.capacity()) {
+            return current;
+        }
+        if (required > Integer.MAX_VALUE) {
+            throw new IOException("File is full");
+        }
+        long capacity = Math.min(Integer.MAX_VALUE, Math.max(required, 2L * current.capacity()));
+
+        /* Readers holding the old mapping keep using it, it is unmapped once it is no longer referenced */
+        buffer = channel.map(FileChannel.MapMode.READ_WRITE, 0, capacity);
+        return buffer;
+    }
+
+    @Override
+    public void close() throws IOException {
+        buffer.force();
+        channel.close();
+    }
+}
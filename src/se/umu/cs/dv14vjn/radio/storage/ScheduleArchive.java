@@ -0,0 +1,296 @@
+package se.umu.cs.dv14vjn.radio.storage;
+
+import se.umu.cs.dv14vjn.radio.channelinfo.Program;
+import se.umu.cs.dv14vjn.radio.channelinfo.StringPool;
+
+import java.io.Closeable;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * ScheduleArchive keeps the history of every program that has aired, for as long as the files are kept
+ * Programs are appended to one memory mapped data file, and each channel has a memory mapped index with the
+ * start time, end time and data offset of its programs in start order. Queries binary search the index and
+ * decode only the programs they return, so nothing is loaded onto the heap up front. A program is archived
+ * once, when it starts after the last archived program of its channel, and never changed afterwards.
+ * @author Vincent Johansson
+ */
+public class ScheduleArchive implements Closeable {
+
+    private static final int DATA_MAGIC = 0x52494E44;
+    private static final int INDEX_MAGIC = 0x52494E58;
+    private static final int VERSION = 1;
+    private static final int ENTRY_SIZE = 24;
+
+    private final Path directory;
+    private final MappedFile data;
+    private final Map<Integer, MappedFile> indexes = new ConcurrentHashMap<>();
+    private ByteBuffer record = ByteBuffer.allocate(1024);
+
+    /**
+     * Initializes a new se.umu.cs.dv14vjn.radio.storage.ScheduleArchive, creating the directory if needed
+     * @param directory Path to the directory of the archive files
+     * @throws IOException if the archive could not be opened
+     */
+    public ScheduleArchive(Path directory) throws IOException {
+        this.directory = directory;
+        Files.createDirectories(directory);
+        data = new MappedFile(directory.resolve("programs.dat"), DATA_MAGIC, VERSION);
+    }
+
+    /**
+     * Archive the programs of a channel that start after its last archived program and have ended by a time
+     * A program without an end time ends when the next program in the array starts, so a last program without
+     * one is left for later. Archiving stops at the first program that has not ended, it is archived by a later
+     * call together with the programs after it.
+     * @param channelId int id of the channel
+     * @param programs Program array in start order
+     * @param until long milliseconds since the epoch, programs ending after it are not archived
+     * @return int number of programs that were archived
+     */
+    public synchronized int append(int channelId, Program[] programs, long until) throws IOException {
+        long last = getLastStart(channelId);
+        MappedFile index = null;
+        int appended = 0;
+        ByteBuffer entry = ByteBuffer.allocate(ENTRY_SIZE);
+        for (int i = 0; i < programs.length; i++) {
+            Program program = programs[i];
+            if (program.getStartTime() <= last) {
+                continue;
+            }
+            long end = endTime(programs, i);
+            if (end == 0 || end > until) {
+                break;
+            }
+            if (index == null) {
+                index = index(channelId, true);
+            }
+
+            /* The data is committed before the index entry pointing to it */
+            long offset = data.append(encode(program, end));
+            entry.clear();
+            entry.putLong(program.getStartTime()).putLong(end).putLong(offset).flip();
+            index.append(entry);
+            last = program.getStartTime();
+            appended++;
+        }
+        return appended;
+    }
+
+    /**
+     * Returns the end time of a program, taken from the start of the next program if it is missing
+     * @param programs Program array in start order
+     * @param i int index of the program
+     * @return long milliseconds since the epoch, 0 if the program has no end time and no program follows it
+     */
+    private static long endTime(Program[] programs, int i) {
+        Program program = programs[i];
+        if (program.getEndTime() > 0) {
+            return program.getEndTime();
+        }
+        for (int next = i + 1; next < programs.length; next++) {
+            if (programs[next].getStartTime() > program.getStartTime()) {
+                return programs[next].getStartTime();
+            }
+        }
+        return 0;
+    }
+
+    /**
+     * Returns the start time of the last archived program of a channel
+     * @param channelId int id of the channel
+     * @return long milliseconds since the epoch, Long.MIN_VALUE if nothing is archived for the channel
+     */
+    public long getLastStart(int channelId) throws IOException {
+        MappedFile index = index(channelId, false);
+        int count = count(index);
+        return count > 0 ? start(index.buffer(), count - 1) : Long.MIN_VALUE;
+    }
+
+    /**
+     * Returns the number of archived programs of a channel
+     * @param channelId int id of the channel
+     * @return int number of programs
+     */
+    public int getProgramCount(int channelId) throws IOException {
+        return count(index(channelId, false));
+    }
+
+    /**
+     * Returns the program that aired on a channel at a time
+     * @param channelId int id of the channel
+     * @param time long milliseconds since the epoch
+     * @return Program, null if nothing archived was on at that time
+     */
+    public Program at(int channelId, long time) throws IOException {
+        MappedFile index = index(channelId, false);
+        int count = count(index);
+        if (count == 0) {
+            return null;
+        }
+        ByteBuffer entries = index.buffer();
+        int found = lastStartingAtOrBefore(entries, count, time);
+        return found >= 0 && time < end(entries, found) ? decode(offset(entries, found)) : null;
+    }
+
+    /**
+     * Returns the programs that were on a channel at some point between two times
+     * @param channelId int id of the channel
+     * @param from long start of the range in milliseconds since the epoch, inclusive
+     * @param to long end of the range in milliseconds since the epoch, exclusive
+     * @return List of programs in start order
+     */
+    public List<Program> range(int channelId, long from, long to) throws IOException {
+        MappedFile index = index(channelId, false);
+        int count = count(index);
+        List<Program> programs = new ArrayList<>();
+        if (count == 0) {
+            return programs;
+        }
+        ByteBuffer entries = index.buffer();
+        int first = lastStartingAtOrBefore(entries, count, from);
+        if (first < 0 || end(entries, first) <= from) {
+            first++;
+        }
+        int last = lastStartingAtOrBefore(entries, count, to - 1);
+        for (int i = first; i <= last; i++) {
+            programs.add(decode(offset(entries, i)));
+        }
+        return programs;
+    }
+
+    /**
+     * Returns the index of a channel
+     * @param channelId int id of the channel
+     * @param create true to create the index if the channel has none
+     * @return MappedFile, null if the channel has no index and none was created
+     */
+    private MappedFile index(int channelId, boolean create) throws IOException {
+        MappedFile index = indexes.get(channelId);
+        if (index != null) {
+            return index;
+        }
+        Path file = directory.resolve(channelId + ".idx");
+        if (!create && !Files.exists(file)) {
+            return null;
+        }
+        synchronized (indexes) {
+            index = indexes.get(channelId);
+            if (index == null) {
+                index = new MappedFile(file, INDEX_MAGIC, VERSION);
+                indexes.put(channelId, index);
+            }
+            return index;
+        }
+    }
+
+    private static int count(MappedFile index) {
+        return index == null ? 0 : (int) ((index.length() - MappedFile.HEADER) / ENTRY_SIZE);
+    }
+
+    /**
+     * Binary search the index for the last program starting at or before a time
+     * @return int entry number, -1 if every program starts later
+     */
+    private static int lastStartingAtOrBefore(ByteBuffer entries, int count, long time) {
+        int low = 0;
+        int high = count - 1;
+        while (low <= high) {
+            int mid = (low + high) >>> 1;
+            if (start(entries, mid) <= time) {
+                low = mid + 1;
+            } else {
+                high = mid - 1;
+            }
+        }
+        return high;
+    }
+
+    private static long start(ByteBuffer entries, int entry) {
+        return entries.getLong(MappedFile.HEADER + entry * ENTRY_SIZE);
+    }
+
+    private static long end(ByteBuffer entries, int entry) {
+        return entries.getLong(MappedFile.HEADER + entry * ENTRY_SIZE + 8);
+    }
+
+    private static long offset(ByteBuffer entries, int entry) {
+        return entries.getLong(MappedFile.HEADER + entry * ENTRY_SIZE + 16);
+    }
+
+    /**
+     * Encode a program as start, end, title, description and image URL, strings as a length and UTF-8 bytes
+     * @param program Program to encode
+     * @param end long end time of the program in milliseconds since the epoch
+     * @return ByteBuffer with the record, reused by the next call
+     */
+    private ByteBuffer encode(Program program, long end) {
+        byte[][] strings = {bytes(program.getTitle()), bytes(program.getDescription()),
+                bytes(program.getImageurl())};
+        int size = 16;
+        for (byte[] string : strings) {
+            size += 4 + (string != null ? string.length : 0);
+        }
+        if (record.capacity() < size) {
+            record = ByteBuffer.allocate(Math.max(size, record.capacity() * 2));
+        }
+        record.clear();
+        record.putLong(program.getStartTime()).putLong(end);
+        for (byte[] string : strings) {
+            if (string == null) {
+                record.putInt(-1);
+            } else {
+                record.putInt(string.length).put(string);
+            }
+        }
+        return record.flip();
+    }
+
+    /**
+     * Decode the program at an offset in the data file
+     * @param offset long offset of the record
+     * @return Program
+     */
+    private Program decode(long offset) {
+        ByteBuffer buffer = data.buffer();
+        int position = (int) offset;
+        Program program = new Program();
+        program.setStarttimeutc(buffer.getLong(position));
+        program.setEndtimeutc(buffer.getLong(position + 8));
+        position += 16;
+        String[] strings = new String[3];
+        for (int i = 0; i < strings.length; i++) {
+            int length = buffer.getInt(position);
+            position += 4;
+            if (length >= 0) {
+                byte[] bytes = new byte[length];
+                buffer.get(position, bytes);
+                strings[i] = StringPool.SHARED.intern(new String(bytes, StandardCharsets.UTF_8));
+                position += length;
+            }
+        }
+        program.setTitle(strings[0]);
+        program.setDescription(strings[1]);
+        program.setImageurl(strings[2]);
+        return program;
+    }
+
+    private static byte[] bytes(String string) {
+        return string != null ? string.getBytes(StandardCharsets.UTF_8) : null;
+    }
+
+    @Override
+    public void close() throws IOException {
+        data.close();
+        for (MappedFile index : indexes.values()) {
+            index.close();
+        }
+    }
+}
@@ -0,0 +1,94 @@
+package se.umu.cs.dv14vjn.radio.storage;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.util.Properties;
+
+/**
+ * SelectionHistory counts which channels the user selects and which channel they select after which,
+ * so that the channels most likely to be opened next can be predicted
+ * The counts are kept in a properties file so they carry over between sessions
+ * @author Vincent Johansson
+ */
+public class SelectionHistory {
+
+    private static final int TRANSITION_WEIGHT = 4;
+
+    private final Path file;
+    private final Properties counts = new Properties();
+
+    /**
+     * Initializes a new se.umu.cs.dv14vjn.radio.storage.SelectionHistory and reads the stored counts
+     * @param file Path to the history file
+     */
+    public SelectionHistory(Path file) {
+        this.file = file;
+        if (Files.isRegularFile(file)) {
+            try (InputStream in = Files.newInputStream(file)) {
+                counts.load(in);
+            } catch (IOException e) {
+                e.printStackTrace();
+            }
+        }
+    }
+
+    /**
+     * Record that a channel was selected and write the history
+     * @param previousId int id of the channel shown before, -1 if none was
+     * @param selectedId int id of the selected channel
+     */
+    public synchronized void record(int previousId, int selectedId) {
+        increment("count." + selectedId);
+        if (previousId >= 0 && previousId != selectedId) {
+            increment("next." + previousId + "." + selectedId);
+        }
+        save();
+    }
+
+    /**
+     * Returns how likely a channel is to be selected next
+     * Channels that have followed the current channel weigh more than channels that are often selected overall
+     * @param candidateId int id of the channel
+     * @param currentId int id of the channel shown now, -1 if none is
+     * @return int score, 0 if the channel has never been selected
+     */
+    public synchronized int score(int candidateId, int currentId) {
+        int score = get("count." + candidateId);
+        if (currentId >= 0) {
+            score += TRANSITION_WEIGHT * get("next." + currentId + "." + candidateId);
+        }
+        return score;
+    }
+
+    private void increment(String key) {
+        counts.setProperty(key, Integer.toString(get(key) + 1));
+    }
+
+    private int get(String key) {
+        try {
+            return Integer.parseInt(counts.getProperty(key, "0"));
+        } catch (NumberFormatException e) {
+            return 0;
+        }
+    }
+
+    /**
+     * Write the history, going through a temporary file so a crash never leaves it half written
+     */
+    private void save() {
+        try {
+            Files.createDirectories(file.getParent());
+            Path temp = Files.createTempFile(file.getParent(), "selections", ".tmp");
+            try (OutputStream out = Files.newOutputStream(temp)) {
+                counts.store(out, "RadioInfo channel selections");
+            }
+            Files.move(temp, file, StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+        } catch (IOException e) {
+            e.printStackTrace();
+        }
+    }
+}
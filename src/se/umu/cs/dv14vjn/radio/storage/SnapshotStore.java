@@ -0,0 +1,160 @@
+package se.umu.cs.dv14vjn.radio.storage;
+
+import se.umu.cs.dv14vjn.radio.channelinfo.Channel;
+import se.umu.cs.dv14vjn.radio.channelinfo.Channels;
+import se.umu.cs.dv14vjn.radio.channelinfo.Program;
+import se.umu.cs.dv14vjn.radio.channelinfo.ScheduleDays;
+import se.umu.cs.dv14vjn.radio.channelinfo.StringPool;
+
+import java.io.*;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.time.LocalDate;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.zip.GZIPInputStream;
+import java.util.zip.GZIPOutputStream;
+
+/**
+ * SnapshotStore writes the channels and the downloaded days of their cached schedules to a compact local file,
+ * so that they can be shown immediately the next time the application starts
+ * @author Vincent Johansson
+ */
+public class SnapshotStore {
+
+    private static final int MAGIC = 0x52494E46;
+    private static final int VERSION = 4;
+
+    private final Path file;
+
+    /**
+     * Initializes a new se.umu.cs.dv14vjn.radio.storage.SnapshotStore
+     * @param file Path to the snapshot file
+     */
+    public SnapshotStore(Path file) {
+        this.file = file;
+    }
+
+    /**
+     * Write a snapshot, replacing the previous one atomically
+     * @param channels Channels object to write
+     */
+    public synchronized void save(Channels channels) throws IOException {
+        Files.createDirectories(file.getParent());
+        Path temp = Files.createTempFile(file.getParent(), "snapshot", ".tmp");
+        try (DataOutputStream out = new DataOutputStream(new BufferedOutputStream(
+                new GZIPOutputStream(Files.newOutputStream(temp))))) {
+            out.writeInt(MAGIC);
+            out.writeInt(VERSION);
+            String[] names = channels.getNames();
+            out.writeInt(names.length);
+            for (String name : names) {
+                writeChannel(out, channels.getChannel(name));
+            }
+        }
+        Files.move(temp, file, StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+    }
+
+    /**
+     * Read the snapshot
+     * @return Channels object, null if there is no snapshot or it could not be read
+     */
+    public synchronized Channels load() {
+        if (!Files.isRegularFile(file)) {
+            return null;
+        }
+        try (DataInputStream in = new DataInputStream(new BufferedInputStream(
+                new GZIPInputStream(Files.newInputStream(file))))) {
+            if (in.readInt() != MAGIC || in.readInt() != VERSION) {
+                return null;
+            }
+            int count = in.readInt();
+            List<Channel> channels = new ArrayList<>(count);
+            for (int i = 0; i < count; i++) {
+                channels.add(readChannel(in));
+            }
+            return new Channels(channels);
+        } catch (IOException e) {
+            e.printStackTrace();
+            return null;
+        }
+    }
+
+    private static void writeChannel(DataOutputStream out, Channel channel) throws IOException {
+        out.writeInt(channel.getId());
+        writeString(out, channel.getName());
+        writeString(out, channel.getImage());
+        writeString(out, channel.getChanneltype());
+        writeString(out, channel.getScheduleurl());
+
+        out.writeBoolean(channel.isCached());
+        if (channel.isCached()) {
+            ScheduleDays days = channel.getDays();
+            List<LocalDate> dates = days.getDates();
+            out.writeInt(dates.size());
+            for (LocalDate date : dates) {
+                Program[] programs = days.getDay(date);
+                out.writeLong(date.toEpochDay());
+                out.writeInt(programs.length);
+                for (Program program : programs) {
+                    writeString(out, program.getTitle());
+                    writeString(out, program.getDescription());
+                    out.writeLong(program.getStartTime());
+                    out.writeLong(program.getEndTime());
+                    writeString(out, program.getImageurl());
+                }
+            }
+        }
+    }
+
+    private static Channel readChannel(DataInputStream in) throws IOException {
+        Channel channel = new Channel(in.readInt(), readString(in), readString(in), readString(in), readString(in));
+
+        /* The schedule itself is cut from the days by the caller, since the window depends on the time */
+        if (in.readBoolean()) {
+            ScheduleDays days = ScheduleDays.EMPTY;
+            int dayCount = in.readInt();
+            for (int d = 0; d < dayCount; d++) {
+                LocalDate date = LocalDate.ofEpochDay(in.readLong());
+                Program[] programs = new Program[in.readInt()];
+                for (int i = 0; i < programs.length; i++) {
+                    Program program = new Program();
+                    program.setTitle(StringPool.SHARED.intern(readString(in)));
+                    program.setDescription(StringPool.SHARED.intern(readString(in)));
+                    program.setStarttimeutc(in.readLong());
+                    program.setEndtimeutc(in.readLong());
+                    program.setImageurl(StringPool.SHARED.intern(readString(in)));
+                    programs[i] = program;
+                }
+                days = days.withDay(date, programs);
+            }
+            channel = channel.withSchedule(days, null).asCached();
+        }
+        return channel;
+    }
+
+    /**
+     * Write a nullable string as its UTF-8 length followed by the bytes, -1 for null
+     */
+    private static void writeString(DataOutputStream out, String value) throws IOException {
+        if (value == null) {
+            out.writeInt(-1);
+            return;
+        }
+        byte[] bytes = value.getBytes(StandardCharsets.UTF_8);
+        out.writeInt(bytes.length);
+        out.write(bytes);
+    }
+
+    private static String readString(DataInputStream in) throws IOException {
+        int length = in.readInt();
+        if (length < 0) {
+            return null;
+        }
+        byte[] bytes = new byte[length];
+        in.readFully(bytes);
+        return new String(bytes, StandardCharsets.UTF_8);
+    }
+}